@@ -1,35 +1,224 @@
-public class Ad {
-    private String id;
-    private String title;
-    private String description;
-    private String imageUrl;
-    private String redirectUrl;
-    private String status;
-    private int clicks;
-    private Integer maxClicks;
-
-    // Getters and setters
+// Immutable; build with Ad.builder() and derive changed copies with toBuilder().
+// Instances can be shared freely between threads and inventory snapshots.
+public final class Ad {
+    public static final int NO_LIMIT = -1; // maxClicks or maxImpressions when the ad has no limit
+    public static final double NO_BUDGET = -1; // budget when the campaign has none set
+
+    private final String id;
+    private final String type; // Placement: "banner" or "interstitial"
+    private final String title;
+    private final String description;
+    private final String imageUrl;
+    private final String redirectUrl;
+    private final String status;
+    private final String updatedAt;
+    private final String startDate; // Flight start; ads are not delivered before it
+    private final String targetAudience; // Rule like "country=us|ca;lang=en"; null or "All" targets everyone
+    private final int clicks;
+    private final int maxClicks;
+    private final int impressions;
+    private final int maxImpressions;
+    private final int frequencyCap; // Max exposures per device per day, 0 = uncapped
+    private final double budget;
+    private final long key;
+
+    private Ad(Builder builder) {
+        this.id = builder.id;
+        this.type = share(builder.type);
+        this.title = builder.title;
+        this.description = builder.description;
+        this.imageUrl = builder.imageUrl;
+        this.redirectUrl = builder.redirectUrl;
+        this.status = share(builder.status);
+        this.updatedAt = builder.updatedAt;
+        this.startDate = builder.startDate;
+        this.targetAudience = share(builder.targetAudience);
+        this.clicks = builder.clicks;
+        this.maxClicks = builder.maxClicks;
+        this.impressions = builder.impressions;
+        this.maxImpressions = builder.maxImpressions;
+        this.frequencyCap = builder.frequencyCap;
+        this.budget = builder.budget;
+        this.key = hash(id);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public Builder toBuilder() {
+        return new Builder()
+                .id(id)
+                .type(type)
+                .title(title)
+                .description(description)
+                .imageUrl(imageUrl)
+                .redirectUrl(redirectUrl)
+                .status(status)
+                .updatedAt(updatedAt)
+                .startDate(startDate)
+                .targetAudience(targetAudience)
+                .clicks(clicks)
+                .maxClicks(maxClicks)
+                .impressions(impressions)
+                .maxImpressions(maxImpressions)
+                .frequencyCap(frequencyCap)
+                .budget(budget);
+    }
+
+    // Getters
     public String getId() { return id; }
-    public void setId(String id) { this.id = id; }
-    
+
+    // 64-bit hash of the id for primitive-keyed lookups
+    public long getKey() { return key; }
+
+    public String getType() { return type; }
+
     public String getTitle() { return title; }
-    public void setTitle(String title) { this.title = title; }
-    
+
     public String getDescription() { return description; }
-    public void setDescription(String description) { this.description = description; }
-    
+
     public String getImageUrl() { return imageUrl; }
-    public void setImageUrl(String imageUrl) { this.imageUrl = imageUrl; }
-    
+
     public String getRedirectUrl() { return redirectUrl; }
-    public void setRedirectUrl(String redirectUrl) { this.redirectUrl = redirectUrl; }
-    
+
     public String getStatus() { return status; }
-    public void setStatus(String status) { this.status = status; }
-    
+
     public int getClicks() { return clicks; }
-    public void setClicks(int clicks) { this.clicks = clicks; }
-    
-    public Integer getMaxClicks() { return maxClicks; }
-    public void setMaxClicks(Integer maxClicks) { this.maxClicks = maxClicks; }
-}
\ No newline at end of file
+
+    public boolean hasMaxClicks() { return maxClicks != NO_LIMIT; }
+
+    public int getMaxClicks() { return maxClicks; }
+
+    public int getImpressions() { return impressions; }
+
+    public boolean hasMaxImpressions() { return maxImpressions != NO_LIMIT; }
+
+    public int getMaxImpressions() { return maxImpressions; }
+
+    public boolean hasBudget() { return budget != NO_BUDGET; }
+
+    public double getBudget() { return budget; }
+
+    public int getFrequencyCap() { return frequencyCap; }
+
+    public String getUpdatedAt() { return updatedAt; }
+
+    public String getStartDate() { return startDate; }
+
+    public String getTargetAudience() { return targetAudience; }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof Ad)) {
+            return false;
+        }
+        Ad ad = (Ad) other;
+        return key == ad.key
+                && clicks == ad.clicks
+                && maxClicks == ad.maxClicks
+                && impressions == ad.impressions
+                && maxImpressions == ad.maxImpressions
+                && Double.compare(budget, ad.budget) == 0
+                && frequencyCap == ad.frequencyCap
+                && Objects.equals(id, ad.id)
+                && Objects.equals(type, ad.type)
+                && Objects.equals(status, ad.status)
+                && Objects.equals(updatedAt, ad.updatedAt)
+                && Objects.equals(startDate, ad.startDate)
+                && Objects.equals(targetAudience, ad.targetAudience)
+                && Objects.equals(title, ad.title)
+                && Objects.equals(description, ad.description)
+                && Objects.equals(imageUrl, ad.imageUrl)
+                && Objects.equals(redirectUrl, ad.redirectUrl);
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (key ^ (key >>> 32));
+    }
+
+    private static long hash(String id) {
+        if (id == null) {
+            return 0;
+        }
+        long hash = 0xcbf29ce484222325L; // FNV-1a
+        for (int i = 0; i < id.length(); i++) {
+            hash ^= id.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash == 0 ? 1 : hash;
+    }
+
+    // Type, status and audience repeat across rows, so all ads share one copy of each value
+    private static String share(String value) {
+        return value != null ? value.intern() : null;
+    }
+
+    public static final class Builder {
+        private String id;
+        private String type;
+        private String title;
+        private String description;
+        private String imageUrl;
+        private String redirectUrl;
+        private String status;
+        private String updatedAt;
+        private String startDate;
+        private String targetAudience;
+        private int clicks;
+        private int maxClicks = NO_LIMIT;
+        private int impressions;
+        private int maxImpressions = NO_LIMIT;
+        private int frequencyCap;
+        private double budget = NO_BUDGET;
+
+        private Builder() {
+        }
+
+        public Builder id(String id) { this.id = id; return this; }
+
+        public Builder type(String type) { this.type = type; return this; }
+
+        public Builder title(String title) { this.title = title; return this; }
+
+        public Builder description(String description) { this.description = description; return this; }
+
+        public Builder imageUrl(String imageUrl) { this.imageUrl = imageUrl; return this; }
+
+        public Builder redirectUrl(String redirectUrl) { this.redirectUrl = redirectUrl; return this; }
+
+        public Builder status(String status) { this.status = status; return this; }
+
+        public Builder updatedAt(String updatedAt) { this.updatedAt = updatedAt; return this; }
+
+        public Builder startDate(String startDate) { this.startDate = startDate; return this; }
+
+        public Builder targetAudience(String targetAudience) { this.targetAudience = targetAudience; return this; }
+
+        public Builder clicks(int clicks) { this.clicks = clicks; return this; }
+
+        public Builder maxClicks(int maxClicks) { this.maxClicks = maxClicks; return this; }
+
+        public Builder impressions(int impressions) { this.impressions = impressions; return this; }
+
+        public Builder maxImpressions(int maxImpressions) { this.maxImpressions = maxImpressions; return this; }
+
+        public Builder frequencyCap(int frequencyCap) { this.frequencyCap = frequencyCap; return this; }
+
+        public Builder budget(double budget) { this.budget = budget; return this; }
+
+        public String getId() { return id; }
+
+        public String getImageUrl() { return imageUrl; }
+
+        public String getRedirectUrl() { return redirectUrl; }
+
+        public Ad build() {
+            return new Ad(this);
+        }
+    }
+}
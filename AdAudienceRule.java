@@ -0,0 +1,123 @@
+// Compiled form of an ad's target_audience. A rule is a list of clauses separated
+// by ';' that must all match, each clause an attribute and the values it accepts,
+// e.g. "country=us|ca;age=18-24|25-34". Null, empty or "All" targets everyone;
+// a rule that does not parse targets no one rather than the wrong audience.
+// Keys and values are case-insensitive.
+public final class AdAudienceRule {
+    public static final AdAudienceRule EVERYONE = new AdAudienceRule(Collections.emptyMap(), false);
+    public static final AdAudienceRule NO_ONE = new AdAudienceRule(Collections.emptyMap(), true);
+
+    private static final String ALL = "all";
+    private static final int MAX_CACHED_RULES = 1024;
+
+    // Many ads share a rule and every sync re-reads it, so each distinct string is parsed once
+    private static final Map<String, AdAudienceRule> cache = new ConcurrentHashMap<>();
+
+    private final Map<String, Set<String>> clauses;
+    private final boolean never;
+
+    private AdAudienceRule(Map<String, Set<String>> clauses, boolean never) {
+        this.clauses = clauses;
+        this.never = never;
+    }
+
+    public static AdAudienceRule of(String rule) {
+        if (rule == null) {
+            return EVERYONE;
+        }
+        AdAudienceRule compiled = cache.get(rule);
+        if (compiled == null) {
+            compiled = parse(rule);
+            if (cache.size() >= MAX_CACHED_RULES) {
+                cache.clear();
+            }
+            cache.put(rule, compiled);
+        }
+        return compiled;
+    }
+
+    static AdAudienceRule parse(String rule) {
+        String trimmed = normalize(rule);
+        if (trimmed.isEmpty() || trimmed.equals(ALL)) {
+            return EVERYONE;
+        }
+
+        Map<String, Set<String>> clauses = new HashMap<>();
+        for (String clause : trimmed.split(";")) {
+            if (clause.trim().isEmpty()) {
+                continue;
+            }
+            int separator = clause.indexOf('=');
+            String key = separator > 0 ? clause.substring(0, separator).trim() : "";
+            if (key.isEmpty()) {
+                return NO_ONE;
+            }
+
+            Set<String> values = new HashSet<>();
+            for (String value : clause.substring(separator + 1).split("\\|")) {
+                if (!value.trim().isEmpty()) {
+                    values.add(value.trim());
+                }
+            }
+            if (values.isEmpty()) {
+                return NO_ONE;
+            }
+
+            // Repeating a key narrows it to the values both clauses accept
+            Set<String> existing = clauses.get(key);
+            if (existing != null) {
+                existing.retainAll(values);
+                if (existing.isEmpty()) {
+                    return NO_ONE;
+                }
+            } else {
+                clauses.put(key, values);
+            }
+        }
+        return clauses.isEmpty() ? EVERYONE : new AdAudienceRule(clauses, false);
+    }
+
+    // Lower-cased, immutable copy of user attributes, the form matches() and the index expect
+    public static Map<String, String> attributes(Map<String, String> attributes) {
+        if (attributes == null || attributes.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        Map<String, String> normalized = new HashMap<>();
+        for (Map.Entry<String, String> entry : attributes.entrySet()) {
+            if (entry.getKey() != null && entry.getValue() != null) {
+                normalized.put(normalize(entry.getKey()), normalize(entry.getValue()));
+            }
+        }
+        return Collections.unmodifiableMap(normalized);
+    }
+
+    static String normalize(String value) {
+        return value.trim().toLowerCase(Locale.ROOT);
+    }
+
+    // Attributes must come from attributes(); a missing attribute fails any clause on it
+    public boolean matches(Map<String, String> attributes) {
+        if (never) {
+            return false;
+        }
+        for (Map.Entry<String, Set<String>> clause : clauses.entrySet()) {
+            String value = attributes.get(clause.getKey());
+            if (value == null || !clause.getValue().contains(value)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public boolean isUntargeted() {
+        return !never && clauses.isEmpty();
+    }
+
+    public boolean matchesNoOne() {
+        return never;
+    }
+
+    Map<String, Set<String>> getClauses() {
+        return clauses;
+    }
+}
@@ -0,0 +1,44 @@
+// Clicks are written to the event journal before anything else happens, so one made
+// offline or just before the process dies is still counted. The replayer sends them
+// after a short window that coalesces bursts into one request.
+public class AdClickPipeline {
+    private static final long FLUSH_WINDOW = 2000; // Coalesce clicks for 2 seconds
+    private static final int MAX_PENDING_CLICKS = 20; // Send early once this many clicks are waiting
+
+    private final AdEventJournal journal;
+    private final AdEventReplayer replayer;
+    private int pendingCount = 0;
+
+    public AdClickPipeline(AdEventJournal journal, AdEventReplayer replayer) {
+        this.journal = journal;
+        this.replayer = replayer;
+    }
+
+    public void recordClick(String adId) {
+        if (adId == null || adId.isEmpty()) {
+            Log.e("AdClickPipeline", "Invalid ad ID provided");
+            return;
+        }
+        if (!journal.append(AdEventJournal.TYPE_CLICK, adId, 1, System.currentTimeMillis())) {
+            return;
+        }
+
+        boolean sendNow;
+        synchronized (this) {
+            sendNow = ++pendingCount >= MAX_PENDING_CLICKS;
+            if (sendNow) {
+                pendingCount = 0;
+            }
+        }
+        replayer.requestDrain(sendNow ? 0 : FLUSH_WINDOW);
+    }
+
+    // Commits the journal to disk and sends what is pending, e.g. before the app goes to the background
+    public void flush() {
+        synchronized (this) {
+            pendingCount = 0;
+        }
+        journal.commitSoon();
+        replayer.requestDrain(0);
+    }
+}
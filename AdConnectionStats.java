@@ -0,0 +1,62 @@
+public class AdConnectionStats extends EventListener {
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong connectionsAcquired = new AtomicLong();
+    private final AtomicLong connectionsOpened = new AtomicLong();
+    private final AtomicLong connectFailures = new AtomicLong();
+    private final AtomicLong tlsHandshakes = new AtomicLong();
+
+    @Override
+    public void callStart(@NonNull Call call) {
+        calls.incrementAndGet();
+    }
+
+    @Override
+    public void connectStart(@NonNull Call call, @NonNull InetSocketAddress inetSocketAddress, @NonNull Proxy proxy) {
+        connectionsOpened.incrementAndGet();
+    }
+
+    @Override
+    public void connectFailed(@NonNull Call call, @NonNull InetSocketAddress inetSocketAddress,
+                              @NonNull Proxy proxy, Protocol protocol, @NonNull IOException ioe) {
+        connectFailures.incrementAndGet();
+    }
+
+    @Override
+    public void secureConnectStart(@NonNull Call call) {
+        tlsHandshakes.incrementAndGet();
+    }
+
+    @Override
+    public void connectionAcquired(@NonNull Call call, @NonNull Connection connection) {
+        connectionsAcquired.incrementAndGet();
+    }
+
+    @Override
+    public void responseBodyEnd(@NonNull Call call, long byteCount) {
+        AdRuntime.metrics().recordValue(AdMetrics.RESPONSE_BYTES, byteCount);
+    }
+
+    public long getCallCount() { return calls.get(); }
+
+    public long getConnectionsAcquired() { return connectionsAcquired.get(); }
+
+    public long getConnectionsOpened() { return connectionsOpened.get(); }
+
+    public long getConnectFailures() { return connectFailures.get(); }
+
+    public long getTlsHandshakes() { return tlsHandshakes.get(); }
+
+    // Every acquisition that did not need a new socket came from the pool
+    public long getConnectionsReused() {
+        return Math.max(0, connectionsAcquired.get() - (connectionsOpened.get() - connectFailures.get()));
+    }
+
+    @Override
+    public String toString() {
+        return "calls=" + getCallCount() +
+               ", acquired=" + getConnectionsAcquired() +
+               ", opened=" + getConnectionsOpened() +
+               ", reused=" + getConnectionsReused() +
+               ", tlsHandshakes=" + getTlsHandshakes();
+    }
+}
@@ -0,0 +1,417 @@
+// Append-only journal of ad events (clicks, impressions) that have not reached the
+// server yet. Events go into memory-mapped segment files as length-prefixed records
+// with a CRC32, so they survive a dropped connection and process death the moment
+// append() returns (once startup recovery has finished; until then they wait in
+// memory). Group commit: one background force() per COMMIT_INTERVAL covers
+// every append in that window, which also makes them survive a device crash.
+// Disk use is bounded by MAX_SEGMENTS; past that the oldest unsent events are dropped.
+//
+// Segment layout: magic, version, segment number, acknowledged offset, then records
+// of [payload length][crc][run id, type, count, timestamp, ad id]. Every process run
+// appends under a fresh random run id, and a run's records only move forward, so the
+// server dedupes with one high-water mark per run rather than one row per event. An
+// offset reused after a crash lost an unforced tail belongs to a new run.
+public class AdEventJournal {
+    public static final byte TYPE_CLICK = 1;
+    public static final byte TYPE_IMPRESSION = 2;
+
+    private static final int MAGIC = 0x4144454A; // "ADEJ"
+    private static final short VERSION = 2;
+    private static final int SEGMENT_SIZE = 256 * 1024;
+    private static final int MAX_SEGMENTS = 8; // 2 MB, roughly 20,000 events
+    private static final int ACK_OFFSET = 4 + 2 + 2 + 8; // magic, version, padding, segment number
+    private static final int HEADER_SIZE = ACK_OFFSET + 4;
+    private static final int RECORD_HEADER_SIZE = 4 + 4; // payload length, crc
+    private static final int MAX_AD_ID_LENGTH = 64;
+    private static final int MAX_PAYLOAD_SIZE = 8 + 1 + 4 + 8 + 2 + 2 * MAX_AD_ID_LENGTH;
+    private static final long COMMIT_INTERVAL = 200;
+    private static final int MAX_PENDING_EVENTS = 1024;
+
+    private final File directory;
+    private final ArrayDeque<Segment> segments = new ArrayDeque<>(); // Oldest first; the last one takes appends
+    private final ScheduledExecutorService commitExecutor = Executors.newSingleThreadScheduledExecutor();
+    private final Runnable commitRunnable = this::commit;
+    private final CRC32 crc = new CRC32();
+    private final byte[] scratch = new byte[MAX_PAYLOAD_SIZE];
+    private final ByteBuffer scratchBuffer = ByteBuffer.wrap(scratch);
+    private final long runId = new SecureRandom().nextLong();
+    private List<PendingEvent> pendingEvents = new ArrayList<>(); // Appends made during recovery; null once recovered
+    private boolean commitScheduled = false;
+    private boolean dirty = false;
+
+    public static final class Event {
+        public final String runId; // Hex id of the process run that appended the event
+        public final long segment;
+        public final int position; // Offset in the segment; with segment, increases within a run
+        public final byte type;
+        public final String adId;
+        public final int count;
+        public final long timestamp;
+        private final int end;
+
+        Event(String runId, long segment, int position, byte type, String adId, int count, long timestamp, int end) {
+            this.runId = runId;
+            this.segment = segment;
+            this.position = position;
+            this.type = type;
+            this.adId = adId;
+            this.count = count;
+            this.timestamp = timestamp;
+            this.end = end;
+        }
+
+        public String getEventId() {
+            return runId + "-" + segment + "-" + position;
+        }
+    }
+
+    private static final class PendingEvent {
+        final byte type;
+        final String adId;
+        final int count;
+        final long timestamp;
+
+        PendingEvent(byte type, String adId, int count, long timestamp) {
+            this.type = type;
+            this.adId = adId;
+            this.count = count;
+            this.timestamp = timestamp;
+        }
+    }
+
+    private static final class Segment {
+        final long number;
+        final File file;
+        final MappedByteBuffer buffer;
+        int readPosition; // First record the server has not acknowledged
+        int writePosition; // End of the last complete record
+
+        Segment(long number, File file, MappedByteBuffer buffer) {
+            this.number = number;
+            this.file = file;
+            this.buffer = buffer;
+        }
+    }
+
+    // Recovery maps and scans every segment, so it runs on the commit thread. Appends
+    // made meanwhile are held in memory and written in order once it finishes.
+    public AdEventJournal(Context context) {
+        this.directory = new File(context.getFilesDir(), "ad_journal");
+        commitExecutor.execute(this::recover);
+    }
+
+    // A few microseconds: copies the record into the mapped segment and returns.
+    // Returns false if the event could not be journaled.
+    public boolean append(byte type, String adId, int count, long timestamp) {
+        if (adId == null || adId.isEmpty() || adId.length() > MAX_AD_ID_LENGTH) {
+            Log.e("AdEventJournal", "Not journaling event for invalid ad ID: " + adId);
+            return false;
+        }
+
+        synchronized (this) {
+            if (pendingEvents != null) {
+                if (pendingEvents.size() >= MAX_PENDING_EVENTS) {
+                    Log.e("AdEventJournal", "Journal still recovering, dropping event for ad " + adId);
+                    return false;
+                }
+                pendingEvents.add(new PendingEvent(type, adId, count, timestamp));
+                return true;
+            }
+            return write(type, adId, count, timestamp);
+        }
+    }
+
+    // Caller holds the lock
+    private boolean write(byte type, String adId, int count, long timestamp) {
+        scratchBuffer.clear();
+        scratchBuffer.putLong(runId);
+        scratchBuffer.put(type);
+        scratchBuffer.putInt(count);
+        scratchBuffer.putLong(timestamp);
+        scratchBuffer.putShort((short) adId.length());
+        for (int i = 0; i < adId.length(); i++) {
+            scratchBuffer.putChar(adId.charAt(i));
+        }
+        int payloadSize = scratchBuffer.position();
+        crc.reset();
+        crc.update(scratch, 0, payloadSize);
+
+        Segment segment = segments.peekLast();
+        if (segment == null || segment.writePosition + RECORD_HEADER_SIZE + payloadSize > SEGMENT_SIZE) {
+            segment = rollSegment();
+            if (segment == null) {
+                return false;
+            }
+        }
+
+        // The length goes in last, so a record torn by a crash reads as the end of the segment
+        int start = segment.writePosition;
+        segment.buffer.putInt(start + 4, (int) crc.getValue());
+        for (int i = 0; i < payloadSize; i++) {
+            segment.buffer.put(start + RECORD_HEADER_SIZE + i, scratch[i]);
+        }
+        segment.buffer.putInt(start, payloadSize);
+        segment.writePosition = start + RECORD_HEADER_SIZE + payloadSize;
+
+        dirty = true;
+        if (!commitScheduled) {
+            commitScheduled = true;
+            commitExecutor.schedule(commitRunnable, COMMIT_INTERVAL, TimeUnit.MILLISECONDS);
+        }
+        return true;
+    }
+
+    // Forces everything appended so far to disk; runs on the commit thread. Sealed
+    // segments were forced when they rolled, so only the active one can be dirty.
+    public void commit() {
+        Segment active;
+        synchronized (this) {
+            commitScheduled = false;
+            if (!dirty) {
+                return;
+            }
+            dirty = false;
+            active = segments.peekLast();
+        }
+        if (active != null) {
+            active.buffer.force();
+        }
+    }
+
+    // Commits now instead of at the end of the window, e.g. when the app goes to the background
+    public void commitSoon() {
+        commitExecutor.execute(commitRunnable);
+    }
+
+    // Oldest unacknowledged events in append order, across segments. Waits for
+    // recovery, so it must not be called on the main thread.
+    public synchronized List<Event> read(int maxEvents) {
+        List<Event> events = new ArrayList<>();
+        while (pendingEvents != null) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return events;
+            }
+        }
+        for (Segment segment : segments) {
+            int position = segment.readPosition;
+            while (events.size() < maxEvents && position < segment.writePosition) {
+                int payloadSize = segment.buffer.getInt(position);
+                int payloadStart = position + RECORD_HEADER_SIZE;
+                int end = payloadStart + payloadSize;
+
+                ByteBuffer payload = segment.buffer.duplicate();
+                payload.position(payloadStart);
+                long run = payload.getLong();
+                byte type = payload.get();
+                int count = payload.getInt();
+                long timestamp = payload.getLong();
+                char[] adId = new char[payload.getShort()];
+                for (int i = 0; i < adId.length; i++) {
+                    adId[i] = payload.getChar();
+                }
+
+                events.add(new Event(Long.toHexString(run), segment.number, position, type,
+                        new String(adId), count, timestamp, end));
+                position = end;
+            }
+            if (events.size() >= maxEvents) {
+                break;
+            }
+        }
+        return events;
+    }
+
+    // Marks every event up to and including the given one as delivered. Fully
+    // delivered segments are deleted, except the one still taking appends.
+    public synchronized void acknowledge(Event last) {
+        while (!segments.isEmpty()) {
+            Segment segment = segments.peekFirst();
+            if (segment.number < last.segment) {
+                if (segment == segments.peekLast()) {
+                    break;
+                }
+                segments.pollFirst();
+                deleteSegment(segment);
+                continue;
+            }
+            if (segment.number == last.segment) {
+                segment.readPosition = last.end;
+                segment.buffer.putInt(ACK_OFFSET, last.end);
+                if (segment.readPosition >= segment.writePosition && segment != segments.peekLast()) {
+                    segments.pollFirst();
+                    deleteSegment(segment);
+                }
+            }
+            break;
+        }
+    }
+
+    // Not empty while recovery may still turn up unsent events
+    public synchronized boolean isEmpty() {
+        if (pendingEvents != null) {
+            return false;
+        }
+        for (Segment segment : segments) {
+            if (segment.readPosition < segment.writePosition) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private Segment rollSegment() {
+        Segment current = segments.peekLast();
+        if (current != null) {
+            // Sealed segments are forced on the commit thread, so the commit only covers the active one
+            MappedByteBuffer sealed = current.buffer;
+            commitExecutor.execute(sealed::force);
+        }
+        if (segments.size() >= MAX_SEGMENTS) {
+            Segment oldest = segments.pollFirst();
+            Log.e("AdEventJournal", "Journal full, dropping unsent events in segment " + oldest.number);
+            AdRuntime.metrics().increment(AdMetrics.JOURNAL_DROPPED, 1);
+            deleteSegment(oldest);
+        }
+
+        long number = current != null ? current.number + 1 : 1;
+        try {
+            Segment segment = mapSegment(new File(directory, segmentName(number)), number, true);
+            segments.addLast(segment);
+            return segment;
+        } catch (IOException e) {
+            Log.e("AdEventJournal", "Cannot create journal segment " + number, e);
+            return null;
+        }
+    }
+
+    private void recover() {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            Log.e("AdEventJournal", "Cannot create " + directory);
+        }
+
+        List<Segment> recovered = new ArrayList<>();
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(".seg"));
+        if (files != null) {
+            Arrays.sort(files, (a, b) -> Long.compare(segmentNumber(a), segmentNumber(b)));
+            for (File file : files) {
+                try {
+                    Segment segment = mapSegment(file, segmentNumber(file), false);
+                    if (segment != null) {
+                        recovered.add(segment);
+                    }
+                } catch (IOException | RuntimeException e) {
+                    Log.e("AdEventJournal", "Discarding unreadable journal segment " + file.getName(), e);
+                    file.delete();
+                }
+            }
+        }
+
+        int pending = 0;
+        for (Segment segment : recovered) {
+            pending += segment.writePosition - segment.readPosition > 0 ? 1 : 0;
+        }
+        Log.d("AdEventJournal", "Recovered " + recovered.size() + " segments, " + pending + " with unsent events");
+
+        synchronized (this) {
+            segments.addAll(recovered);
+            for (PendingEvent event : pendingEvents) {
+                if (!write(event.type, event.adId, event.count, event.timestamp)) {
+                    Log.e("AdEventJournal", "Dropping event for ad " + event.adId + " appended during recovery");
+                }
+            }
+            pendingEvents = null;
+            notifyAll();
+        }
+    }
+
+    private Segment mapSegment(File file, long number, boolean create) throws IOException {
+        MappedByteBuffer buffer;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            if (create) {
+                raf.setLength(SEGMENT_SIZE);
+            } else if (raf.length() != SEGMENT_SIZE) {
+                throw new IOException("Unexpected segment size " + raf.length());
+            }
+            // The mapping stays valid after the file is closed
+            buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, SEGMENT_SIZE);
+        }
+
+        Segment segment = new Segment(number, file, buffer);
+        if (create) {
+            buffer.putInt(0, MAGIC);
+            buffer.putShort(4, VERSION);
+            buffer.putLong(8, number);
+            buffer.putInt(ACK_OFFSET, HEADER_SIZE);
+            segment.readPosition = HEADER_SIZE;
+            segment.writePosition = HEADER_SIZE;
+            return segment;
+        }
+
+        if (buffer.getInt(0) != MAGIC || buffer.getShort(4) != VERSION || buffer.getLong(8) != number) {
+            throw new IOException("Bad segment header");
+        }
+        segment.readPosition = Math.max(HEADER_SIZE, Math.min(buffer.getInt(ACK_OFFSET), SEGMENT_SIZE));
+        segment.writePosition = scanRecords(segment);
+        if (segment.readPosition > segment.writePosition) {
+            segment.readPosition = segment.writePosition;
+        }
+        if (segment.readPosition == segment.writePosition && segment.writePosition + RECORD_HEADER_SIZE + MAX_PAYLOAD_SIZE > SEGMENT_SIZE) {
+            // Fully delivered and too full for more appends
+            deleteSegment(segment);
+            return null;
+        }
+        return segment;
+    }
+
+    // Finds the end of the valid records; anything after a bad length or CRC is a torn tail
+    private int scanRecords(Segment segment) {
+        MappedByteBuffer buffer = segment.buffer;
+        CRC32 checksum = new CRC32();
+        byte[] payload = new byte[MAX_PAYLOAD_SIZE];
+        int position = HEADER_SIZE;
+        while (position + RECORD_HEADER_SIZE <= SEGMENT_SIZE) {
+            int payloadSize = buffer.getInt(position);
+            if (payloadSize <= 0 || payloadSize > MAX_PAYLOAD_SIZE
+                    || position + RECORD_HEADER_SIZE + payloadSize > SEGMENT_SIZE) {
+                break;
+            }
+            for (int i = 0; i < payloadSize; i++) {
+                payload[i] = buffer.get(position + RECORD_HEADER_SIZE + i);
+            }
+            checksum.reset();
+            checksum.update(payload, 0, payloadSize);
+            if ((int) checksum.getValue() != buffer.getInt(position + 4)) {
+                Log.e("AdEventJournal", "Torn record at " + position + " in segment " + segment.number);
+                break;
+            }
+            position += RECORD_HEADER_SIZE + payloadSize;
+        }
+        // Appends resume at the first invalid byte; wipe a torn length so it cannot resurface
+        if (position + 4 <= SEGMENT_SIZE) {
+            buffer.putInt(position, 0);
+        }
+        return position;
+    }
+
+    private static void deleteSegment(Segment segment) {
+        if (!segment.file.delete()) {
+            Log.e("AdEventJournal", "Cannot delete " + segment.file);
+        }
+    }
+
+    private static String segmentName(long number) {
+        return String.format(Locale.ROOT, "%016d.seg", number);
+    }
+
+    private static long segmentNumber(File file) {
+        String name = file.getName();
+        try {
+            return Long.parseLong(name.substring(0, name.length() - ".seg".length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
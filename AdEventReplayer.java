@@ -0,0 +1,166 @@
+// Drains the event journal to the server in append order, one batch in flight at a
+// time. A batch leaves the journal only once the server has applied it; the server
+// dedupes by run and position, so a batch cut off in transit is simply sent again. Failures
+// back off with jitter, and nothing is lost while offline or across restarts. A batch
+// the server rejects for bad event data is split in half until the bad event is alone,
+// and only that event is dropped. Scheduling runs on a background thread.
+public class AdEventReplayer {
+    private static final int BATCH_SIZE = 100;
+    private static final long BASE_BACKOFF = 5000;
+    private static final long MAX_BACKOFF = 5 * 60 * 1000L;
+    private static final long MAX_EVENT_AGE = 7 * 24 * 60 * 60 * 1000L; // Server keeps a run's mark at least this long
+
+    private final AdEventJournal journal;
+    private final AdApiClient adApiClient;
+    private final HandlerThread thread = new HandlerThread("AdEventReplayer");
+    private final Handler handler;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Random random = new Random();
+    private final Runnable drainRunnable = this::drain;
+    private final List<OnEventResultListener> listeners = new CopyOnWriteArrayList<>();
+    private long drainAt = Long.MAX_VALUE; // Uptime of the pending drain; guarded by this
+    private int consecutiveFailures = 0; // Guarded by this
+    private boolean inFlight = false; // Replayer thread only
+    private int batchLimit = BATCH_SIZE; // Replayer thread only; shrinks while isolating a rejected event
+
+    public interface OnEventResultListener {
+        void onEventResult(String adId, int clicks, int impressions, String status);
+    }
+
+    public AdEventReplayer(AdEventJournal journal, AdApiClient adApiClient) {
+        this.journal = journal;
+        this.adApiClient = adApiClient;
+        thread.start();
+        this.handler = new Handler(thread.getLooper());
+    }
+
+    // Sends whatever the previous process left behind
+    public void start() {
+        requestDrain(0);
+    }
+
+    // Drains within delayMs from any thread without allocating. An earlier request
+    // wins, and a backoff in progress is kept.
+    public synchronized void requestDrain(long delayMs) {
+        if (consecutiveFailures > 0) {
+            return;
+        }
+        schedule(delayMs);
+    }
+
+    private synchronized void schedule(long delayMs) {
+        long at = SystemClock.uptimeMillis() + delayMs;
+        if (at >= drainAt) {
+            return;
+        }
+        handler.removeCallbacks(drainRunnable);
+        handler.postAtTime(drainRunnable, at);
+        drainAt = at;
+    }
+
+    private void drain() {
+        synchronized (this) {
+            drainAt = Long.MAX_VALUE;
+        }
+        if (inFlight) {
+            // The pending result drains the rest
+            return;
+        }
+
+        List<AdEventJournal.Event> events = journal.read(batchLimit);
+        if (events.isEmpty()) {
+            return;
+        }
+
+        // Events the server would no longer dedupe are dropped rather than risk a double count
+        long oldest = System.currentTimeMillis() - MAX_EVENT_AGE;
+        int stale = 0;
+        while (stale < events.size() && events.get(stale).timestamp < oldest) {
+            stale++;
+        }
+        if (stale > 0) {
+            Log.e("AdEventReplayer", "Dropping " + stale + " events older than " + MAX_EVENT_AGE + " ms");
+            journal.acknowledge(events.get(stale - 1));
+            schedule(0);
+            return;
+        }
+
+        inFlight = true;
+        adApiClient.recordAdEvents(events, new AdApiClient.EventBatchCallback() {
+            @Override
+            public void onResult(String adId, int clicks, int impressions, String status) {
+                mainHandler.post(() -> {
+                    for (OnEventResultListener listener : listeners) {
+                        listener.onEventResult(adId, clicks, impressions, status);
+                    }
+                });
+            }
+
+            @Override
+            public void onComplete() {
+                handler.post(() -> onBatchResult(events, true, false));
+            }
+
+            @Override
+            public void onError(String error, boolean badData) {
+                handler.post(() -> {
+                    if (badData) {
+                        onBatchRejected(events, error);
+                    } else {
+                        onBatchResult(events, false, true);
+                    }
+                });
+            }
+        });
+    }
+
+    // Bisects towards the event the server cannot accept; the events before it go
+    // through in the smaller batches, and the ones after it follow once it is dropped
+    private void onBatchRejected(List<AdEventJournal.Event> events, String error) {
+        if (events.size() > 1) {
+            batchLimit = events.size() / 2;
+            Log.d("AdEventReplayer", "Event batch rejected (" + error + "), retrying " + batchLimit + " events");
+            onBatchResult(events, false, false);
+            return;
+        }
+
+        AdEventJournal.Event event = events.get(0);
+        Log.e("AdEventReplayer", "Dropping event " + event.getEventId() + " for ad " + event.adId + ": " + error);
+        onBatchResult(events, true, false);
+    }
+
+    private void onBatchResult(List<AdEventJournal.Event> events, boolean acknowledge, boolean failed) {
+        inFlight = false;
+        if (acknowledge) {
+            journal.acknowledge(events.get(events.size() - 1));
+            // Back to full batches; if the bad event is still ahead, the next rejection halves again
+            batchLimit = BATCH_SIZE;
+        }
+
+        synchronized (this) {
+            if (failed) {
+                consecutiveFailures++;
+                // Equal jitter: half the backoff is fixed, the other half random
+                long backoff = Math.min(MAX_BACKOFF, BASE_BACKOFF << Math.min(consecutiveFailures - 1, 16));
+                long delay = backoff / 2 + (long) (random.nextDouble() * backoff / 2);
+                handler.removeCallbacks(drainRunnable);
+                drainAt = Long.MAX_VALUE;
+                schedule(delay);
+                Log.d("AdEventReplayer", "Retrying event batch in " + delay + " ms");
+            } else {
+                consecutiveFailures = 0;
+                if (!journal.isEmpty()) {
+                    schedule(0);
+                }
+            }
+        }
+    }
+
+    public void addOnEventResultListener(OnEventResultListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeOnEventResultListener(OnEventResultListener listener) {
+        listeners.remove(listener);
+    }
+}
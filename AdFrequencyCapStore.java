@@ -0,0 +1,208 @@
+// Per-ad exposure counts over a sliding 24 hour window, kept in hourly buckets.
+// Keyed by Ad.getKey() in open-addressing primitive arrays. Main thread only.
+public class AdFrequencyCapStore implements AdSelector.Filter {
+    private static final int BUCKETS = 24;
+    private static final long BUCKET_SIZE = 60 * 60 * 1000L; // One hour per bucket
+    private static final int INITIAL_CAPACITY = 64; // Power of two
+    private static final int FILE_VERSION = 1;
+
+    private final File file;
+    private final ExecutorService writeExecutor = Executors.newSingleThreadExecutor();
+    private long[] keys;
+    private long[] lastBuckets;
+    private int[] totals;
+    private int[] counts;
+    private int size = 0;
+    private boolean dirty = false;
+
+    public AdFrequencyCapStore(Context context) {
+        this.file = new File(context.getFilesDir(), "ad_frequency_caps.bin");
+        allocate(INITIAL_CAPACITY);
+        load();
+    }
+
+    // O(1) and allocation-free; safe to call on every rotation tick
+    public boolean canShow(Ad ad, long now) {
+        int cap = ad.getFrequencyCap();
+        if (cap <= 0) {
+            return true;
+        }
+
+        int index = indexOf(ad.getKey());
+        if (index < 0) {
+            return true;
+        }
+        advance(index, now / BUCKET_SIZE);
+        return totals[index] < cap;
+    }
+
+    @Override
+    public boolean accept(Ad ad, long now) {
+        return canShow(ad, now);
+    }
+
+    public void recordExposure(Ad ad, long now) {
+        if (ad.getFrequencyCap() <= 0) {
+            return;
+        }
+
+        long bucket = now / BUCKET_SIZE;
+        int index = indexOf(ad.getKey());
+        if (index < 0) {
+            index = insert(ad.getKey(), bucket);
+        }
+        advance(index, bucket);
+        counts[index * BUCKETS + (int) (bucket % BUCKETS)]++;
+        totals[index]++;
+        dirty = true;
+    }
+
+    // Drops buckets that slid out of the window since the last access
+    private void advance(int index, long bucket) {
+        long elapsed = bucket - lastBuckets[index];
+        if (elapsed <= 0) {
+            return;
+        }
+
+        int base = index * BUCKETS;
+        if (elapsed >= BUCKETS) {
+            Arrays.fill(counts, base, base + BUCKETS, 0);
+            totals[index] = 0;
+        } else {
+            for (long b = lastBuckets[index] + 1; b <= bucket; b++) {
+                int slot = base + (int) (b % BUCKETS);
+                totals[index] -= counts[slot];
+                counts[slot] = 0;
+            }
+        }
+        lastBuckets[index] = bucket;
+    }
+
+    private int indexOf(long key) {
+        int mask = keys.length - 1;
+        int index = mix(key) & mask;
+        while (keys[index] != 0) {
+            if (keys[index] == key) {
+                return index;
+            }
+            index = (index + 1) & mask;
+        }
+        return -1;
+    }
+
+    private int insert(long key, long bucket) {
+        if ((size + 1) * 2 > keys.length) {
+            rehash(keys.length * 2);
+        }
+
+        int mask = keys.length - 1;
+        int index = mix(key) & mask;
+        while (keys[index] != 0) {
+            index = (index + 1) & mask;
+        }
+        keys[index] = key;
+        lastBuckets[index] = bucket;
+        size++;
+        return index;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        long[] oldLastBuckets = lastBuckets;
+        int[] oldTotals = totals;
+        int[] oldCounts = counts;
+        long currentBucket = System.currentTimeMillis() / BUCKET_SIZE;
+
+        allocate(capacity);
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            // Entries whose whole window has expired are dropped here
+            if (oldKeys[i] == 0 || currentBucket - oldLastBuckets[i] >= BUCKETS) {
+                continue;
+            }
+            int index = insert(oldKeys[i], oldLastBuckets[i]);
+            totals[index] = oldTotals[i];
+            System.arraycopy(oldCounts, i * BUCKETS, counts, index * BUCKETS, BUCKETS);
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        lastBuckets = new long[capacity];
+        totals = new int[capacity];
+        counts = new int[capacity * BUCKETS];
+    }
+
+    private static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    // Copies the live entries on the calling thread and writes them in the background
+    public void save() {
+        if (!dirty) {
+            return;
+        }
+        dirty = false;
+
+        final long[] keysCopy = keys.clone();
+        final long[] lastBucketsCopy = lastBuckets.clone();
+        final int[] totalsCopy = totals.clone();
+        final int[] countsCopy = counts.clone();
+        final int entries = size;
+
+        writeExecutor.execute(() -> {
+            File tempFile = new File(file.getPath() + ".tmp");
+            try (DataOutputStream output = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+                output.writeInt(FILE_VERSION);
+                output.writeInt(entries);
+                for (int i = 0; i < keysCopy.length; i++) {
+                    if (keysCopy[i] == 0) {
+                        continue;
+                    }
+                    output.writeLong(keysCopy[i]);
+                    output.writeLong(lastBucketsCopy[i]);
+                    output.writeInt(totalsCopy[i]);
+                    for (int b = 0; b < BUCKETS; b++) {
+                        output.writeInt(countsCopy[i * BUCKETS + b]);
+                    }
+                }
+            } catch (IOException e) {
+                Log.e("AdFrequencyCapStore", "Failed to save frequency caps", e);
+                return;
+            }
+            if (!tempFile.renameTo(file)) {
+                Log.e("AdFrequencyCapStore", "Failed to replace frequency cap file");
+            }
+        });
+    }
+
+    private void load() {
+        if (!file.exists()) {
+            return;
+        }
+
+        try (DataInputStream input = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file)))) {
+            if (input.readInt() != FILE_VERSION) {
+                return;
+            }
+            int entries = input.readInt();
+            for (int i = 0; i < entries; i++) {
+                long key = input.readLong();
+                long lastBucket = input.readLong();
+                int total = input.readInt();
+                int index = insert(key, lastBucket);
+                totals[index] = total;
+                for (int b = 0; b < BUCKETS; b++) {
+                    counts[index * BUCKETS + b] = input.readInt();
+                }
+            }
+        } catch (IOException e) {
+            Log.e("AdFrequencyCapStore", "Discarding unreadable frequency caps", e);
+            allocate(INITIAL_CAPACITY);
+            size = 0;
+        }
+    }
+}
@@ -0,0 +1,27 @@
+// Viewable impressions go to the event journal as they happen, one record each, and
+// are sent in the background about once a minute, together with any clicks waiting
+// by then. The replayer batches records, so there is nothing to aggregate here.
+public class AdImpressionTracker {
+    private static final long FLUSH_INTERVAL = 60000; // Report impressions once a minute
+
+    private final AdEventJournal journal;
+    private final AdEventReplayer replayer;
+
+    public AdImpressionTracker(AdEventJournal journal, AdEventReplayer replayer) {
+        this.journal = journal;
+        this.replayer = replayer;
+    }
+
+    // One journal record; no allocation on the view's thread
+    public void recordImpression(String adId) {
+        if (journal.append(AdEventJournal.TYPE_IMPRESSION, adId, 1, System.currentTimeMillis())) {
+            replayer.requestDrain(FLUSH_INTERVAL);
+        }
+    }
+
+    // Commits the journal to disk and sends what is pending
+    public void flush() {
+        journal.commitSoon();
+        replayer.requestDrain(0);
+    }
+}
@@ -0,0 +1,43 @@
+// One consistent, immutable version of the inventory. The store publishes a new
+// snapshot with a single volatile write, so readers on any thread never lock and
+// never see a half-applied sync.
+public final class AdInventorySnapshot {
+    public static final AdInventorySnapshot EMPTY =
+            new AdInventorySnapshot(Collections.emptyMap(), Collections.emptyMap(), 0);
+
+    private final Map<String, Ad> adsById;
+    private final Map<String, List<Ad>> adsByType;
+    private final long version;
+
+    AdInventorySnapshot(Map<String, Ad> adsById, Map<String, List<Ad>> adsByType, long version) {
+        this.adsById = adsById;
+        this.adsByType = adsByType;
+        this.version = version;
+    }
+
+    public List<Ad> getAds(String type) {
+        List<Ad> ads = adsByType.get(type);
+        return ads != null ? ads : Collections.emptyList();
+    }
+
+    public Ad getAd(String adId) {
+        return adId != null ? adsById.get(adId) : null;
+    }
+
+    public boolean contains(String adId) {
+        return adId != null && adsById.containsKey(adId);
+    }
+
+    public Collection<Ad> getAllAds() {
+        return adsById.values();
+    }
+
+    public int size() {
+        return adsById.size();
+    }
+
+    // Increases with every published change
+    public long getVersion() {
+        return version;
+    }
+}
@@ -0,0 +1,382 @@
+// Single source of ads for every placement. One fetch and one parse feed an id-keyed
+// map; each placement type gets an immutable view that is rebuilt only when that
+// type's ads change. Writes happen on the main thread and are published as an
+// AdInventorySnapshot that any thread can read without locking.
+public class AdInventoryStore {
+    public static final String TYPE_BANNER = "banner";
+    public static final String TYPE_INTERSTITIAL = "interstitial";
+
+    private static final int FULL_SYNC_EVERY = 20; // Full resync every 20 polls to catch deleted ads
+    private static final String SNAPSHOT_NAME = "inventory";
+    private static final int PAGE_SIZE = 500; // Rows per full-sync page; bounds the memory of one parse
+    private static final int MAX_PARALLEL_PAGES = 4; // Id ranges fetched side by side
+    private static final String[] TYPES = { TYPE_BANNER, TYPE_INTERSTITIAL };
+
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final AdApiClient adApiClient;
+    private final AdSnapshotStore snapshotStore;
+    private final Map<String, Ad> adsById = new LinkedHashMap<>();
+    private final Map<String, Map<String, Ad>> adsByType = new HashMap<>();
+    private final Map<String, List<OnInventoryChangedListener>> listeners = new HashMap<>();
+    private final List<OnRefreshListener> pendingRefreshListeners = new ArrayList<>();
+    private final Set<String> changedTypes = new HashSet<>();
+    private final Set<String> fullSyncSeen = new HashSet<>(); // Ids returned by the running full sync
+    private final AdReloadScheduler reloadScheduler;
+    private final AdRealtimeChannel.Listener realtimeListener = new AdRealtimeChannel.Listener() {
+        @Override
+        public void onSubscribed() {
+            reloadScheduler.setRealtimeConnected(true);
+        }
+
+        @Override
+        public void onAdChanged(Ad ad) {
+            // The delta cursor is left alone; the next poll refetches these rows harmlessly
+            apply(ad, adsById.get(ad.getId()));
+            publish(true);
+        }
+
+        @Override
+        public void onAdDeleted(String adId) {
+            remove(adId);
+            publish(true);
+        }
+
+        @Override
+        public void onUnsubscribed() {
+            reloadScheduler.setRealtimeConnected(false);
+        }
+    };
+    private AdRealtimeChannel realtimeChannel;
+    private volatile AdInventorySnapshot snapshot = AdInventorySnapshot.EMPTY;
+    private String syncCursor;
+    private String fullSyncCursor;
+    private boolean fullSyncChanged = false;
+    private int deltaSyncCount = 0;
+    private int pollingClients = 0;
+    private boolean isLoading = false;
+
+    public interface OnInventoryChangedListener {
+        void onInventoryChanged(List<Ad> ads);
+    }
+
+    public interface OnRefreshListener {
+        void onRefreshed(boolean success, boolean changed);
+    }
+
+    AdInventoryStore(AdApiClient adApiClient, AdSnapshotStore snapshotStore) {
+        this.adApiClient = adApiClient;
+        this.snapshotStore = snapshotStore;
+        this.reloadScheduler = new AdReloadScheduler(callback -> handler.post(() -> refresh(callback::onSyncResult)));
+        for (String type : TYPES) {
+            adsByType.put(type, new LinkedHashMap<>());
+            listeners.put(type, new ArrayList<>());
+        }
+        restoreSnapshot();
+    }
+
+    private void restoreSnapshot() {
+        AdSnapshotStore.Snapshot saved = snapshotStore.load(SNAPSHOT_NAME);
+        if (saved == null) {
+            return;
+        }
+
+        // Every placement can show the last good inventory before the first fetch
+        for (Ad ad : saved.ads) {
+            if (AdJsonDecoder.isEligible(ad)) {
+                put(ad);
+            }
+        }
+        syncCursor = saved.cursor;
+        publish(false);
+        Log.d("AdInventoryStore", "Restored " + adsById.size() + " ads from snapshot");
+    }
+
+    // Safe from any thread; the returned snapshot never changes
+    public AdInventorySnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    // Immutable; callers can keep the list as long as they like
+    public List<Ad> getAds(String type) {
+        return snapshot.getAds(type);
+    }
+
+    public Ad getAd(String adId) {
+        return snapshot.getAd(adId);
+    }
+
+    public boolean contains(String adId) {
+        return snapshot.contains(adId);
+    }
+
+    public void addOnInventoryChangedListener(String type, OnInventoryChangedListener listener) {
+        listeners.get(type).add(listener);
+    }
+
+    public void removeOnInventoryChangedListener(String type, OnInventoryChangedListener listener) {
+        listeners.get(type).remove(listener);
+    }
+
+    public AdReloadScheduler getReloadScheduler() {
+        return reloadScheduler;
+    }
+
+    // Optional push mode: row changes are applied as they happen and polling drops
+    // to a slow fallback while the channel is joined
+    public void enableRealtime() {
+        enableRealtime(adApiClient.getRealtimeUrl());
+    }
+
+    // Any Phoenix-compatible endpoint works, e.g. a local stand-in server for testing
+    public void enableRealtime(String url) {
+        disableRealtime();
+        realtimeChannel = adApiClient.createRealtimeChannel(url, realtimeListener);
+        if (pollingClients > 0) {
+            realtimeChannel.open();
+        }
+    }
+
+    public void disableRealtime() {
+        if (realtimeChannel != null) {
+            realtimeChannel.close();
+            realtimeChannel = null;
+        }
+    }
+
+    // Polling runs while at least one placement on screen wants it; the first
+    // client to resume triggers one immediate sync
+    public void resumePolling() {
+        if (pollingClients++ == 0) {
+            reloadScheduler.resume();
+            if (realtimeChannel != null) {
+                realtimeChannel.open();
+            }
+        }
+    }
+
+    public void pausePolling() {
+        if (pollingClients > 0 && --pollingClients == 0) {
+            reloadScheduler.pause();
+            if (realtimeChannel != null) {
+                realtimeChannel.close();
+            }
+        }
+    }
+
+    // Concurrent callers share the fetch already in flight
+    public void refresh(OnRefreshListener listener) {
+        if (listener != null) {
+            pendingRefreshListeners.add(listener);
+        }
+        if (isLoading) {
+            return;
+        }
+        isLoading = true;
+
+        if (syncCursor == null || deltaSyncCount >= FULL_SYNC_EVERY) {
+            fullSync();
+            return;
+        }
+
+        adApiClient.fetchAds(syncCursor, new AdSyncCallback() {
+            @Override
+            public void onChanged(List<Ad> changedAds) {
+                // Rows arrive ordered by updated_at, so the last one carries the new cursor
+                String cursor = null;
+                for (Ad ad : changedAds) {
+                    if (ad.getUpdatedAt() != null) {
+                        cursor = ad.getUpdatedAt();
+                    }
+                }
+
+                final String newCursor = cursor;
+                handler.post(() -> finishRefresh(true, mergeDelta(changedAds, newCursor)));
+            }
+
+            @Override
+            public void onUnchanged() {
+                handler.post(() -> {
+                    deltaSyncCount++;
+                    finishRefresh(true, false);
+                });
+            }
+
+            @Override
+            public void onError(String error) {
+                Log.e("AdInventoryStore", "Error loading ads: " + error);
+                handler.post(() -> finishRefresh(false, false));
+            }
+        });
+    }
+
+    // Pages are merged as they arrive, so a cold start can select ads after the first
+    // page; ads missing from every page are removed once the last one is in
+    private void fullSync() {
+        fullSyncSeen.clear();
+        fullSyncCursor = null;
+        fullSyncChanged = false;
+
+        adApiClient.fetchAdPages(PAGE_SIZE, MAX_PARALLEL_PAGES, new AdApiClient.AdPageCallback() {
+            @Override
+            public void onPage(List<Ad> ads) {
+                handler.post(() -> mergePage(ads));
+            }
+
+            @Override
+            public void onComplete() {
+                handler.post(() -> finishRefresh(true, finishFullSync()));
+            }
+
+            @Override
+            public void onError(String error) {
+                // Pages already merged stay; pruning and the cursor wait for a complete sync
+                Log.e("AdInventoryStore", "Error loading ads: " + error);
+                handler.post(() -> finishRefresh(false, fullSyncChanged));
+            }
+        });
+    }
+
+    private void mergePage(List<Ad> ads) {
+        AdInventorySnapshot previous = snapshot;
+        for (Ad ad : ads) {
+            fullSyncSeen.add(ad.getId());
+            apply(ad, previous.getAd(ad.getId()));
+
+            // Pages are ordered by id, so the cursor is the newest row seen on any page.
+            // PostgREST timestamps share one format and offset, so they sort as strings
+            String updatedAt = ad.getUpdatedAt();
+            if (updatedAt != null && (fullSyncCursor == null || updatedAt.compareTo(fullSyncCursor) > 0)) {
+                fullSyncCursor = updatedAt;
+            }
+        }
+        fullSyncChanged |= publish(true);
+    }
+
+    // Returns whether any placement's view changed during the whole sync
+    private boolean finishFullSync() {
+        for (String adId : new ArrayList<>(adsById.keySet())) {
+            if (!fullSyncSeen.contains(adId)) {
+                remove(adId);
+            }
+        }
+        fullSyncSeen.clear();
+        deltaSyncCount = 0;
+        if (fullSyncCursor != null) {
+            syncCursor = fullSyncCursor;
+        }
+        fullSyncChanged |= publish(true);
+        snapshotStore.save(SNAPSHOT_NAME, new ArrayList<>(snapshot.getAllAds()), syncCursor);
+        return fullSyncChanged;
+    }
+
+    private void finishRefresh(boolean success, boolean changed) {
+        isLoading = false;
+        List<OnRefreshListener> refreshListeners = new ArrayList<>(pendingRefreshListeners);
+        pendingRefreshListeners.clear();
+        for (OnRefreshListener listener : refreshListeners) {
+            listener.onRefreshed(success, changed);
+        }
+    }
+
+    // Returns whether any placement's view changed
+    private boolean mergeDelta(List<Ad> changedAds, String cursor) {
+        AdInventorySnapshot previous = snapshot;
+        deltaSyncCount++;
+        for (Ad ad : changedAds) {
+            apply(ad, previous.getAd(ad.getId()));
+        }
+
+        if (cursor != null) {
+            syncCursor = cursor;
+        }
+        boolean changed = publish(true);
+        if (changed) {
+            snapshotStore.save(SNAPSHOT_NAME, new ArrayList<>(snapshot.getAllAds()), syncCursor);
+        }
+        return changed;
+    }
+
+    // Rows that did not really change keep their existing instance, so untouched
+    // views, selectors and prepared ads stay valid and nothing new is retained
+    private void apply(Ad ad, Ad existing) {
+        if (existing != null && existing.equals(ad)) {
+            if (!adsById.containsKey(ad.getId())) {
+                put(existing);
+            }
+            return;
+        }
+
+        remove(ad.getId());
+        if (AdJsonDecoder.isEligible(ad)) {
+            put(ad);
+        }
+    }
+
+    // Event batches return the server-side state of each ad they touched
+    void applyCounterResult(String adId, int clicks, int impressions, String status) {
+        Ad ad = adsById.get(adId);
+        if (ad == null) {
+            return;
+        }
+
+        // Copy on write: readers holding the old snapshot keep a consistent view.
+        // Capped or paused ads leave every placement right away; otherwise the
+        // type's view is still republished so selectors pick up the new weight and
+        // the pacer the new impression headroom
+        apply(ad.toBuilder().clicks(clicks).impressions(impressions).status(status).build(), ad);
+        publish(true);
+    }
+
+    private void put(Ad ad) {
+        Map<String, Ad> typeIndex = adsByType.get(ad.getType());
+        if (typeIndex == null) {
+            return;
+        }
+        adsById.put(ad.getId(), ad);
+        typeIndex.put(ad.getId(), ad);
+        changedTypes.add(ad.getType());
+    }
+
+    private void remove(String adId) {
+        Ad ad = adsById.remove(adId);
+        if (ad != null) {
+            adsByType.get(ad.getType()).remove(adId);
+            changedTypes.add(ad.getType());
+        }
+    }
+
+    // Swaps in a new snapshot if any type's view changed; returns whether it did
+    private boolean publish(boolean notify) {
+        AdInventorySnapshot previous = snapshot;
+        Map<String, List<Ad>> views = new HashMap<>();
+        List<String> republished = new ArrayList<>();
+        for (String type : TYPES) {
+            List<Ad> view = previous.getAds(type);
+            if (changedTypes.contains(type)) {
+                List<Ad> ads = new ArrayList<>(adsByType.get(type).values());
+                if (!ads.equals(view)) {
+                    view = Collections.unmodifiableList(ads);
+                    republished.add(type);
+                }
+            }
+            views.put(type, view);
+        }
+        changedTypes.clear();
+
+        if (republished.isEmpty()) {
+            return false;
+        }
+        snapshot = new AdInventorySnapshot(Collections.unmodifiableMap(new HashMap<>(adsById)),
+                Collections.unmodifiableMap(views), previous.getVersion() + 1);
+
+        if (notify) {
+            for (String type : republished) {
+                List<Ad> view = snapshot.getAds(type);
+                for (OnInventoryChangedListener listener : new ArrayList<>(listeners.get(type))) {
+                    listener.onInventoryChanged(view);
+                }
+            }
+        }
+        return true;
+    }
+}
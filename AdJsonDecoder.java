@@ -0,0 +1,137 @@
+public final class AdJsonDecoder {
+    private AdJsonDecoder() {
+    }
+
+    // Reads a PostgREST array of ad rows token by token. With eligibleOnly set,
+    // paused and click-capped rows are dropped as soon as they are read.
+    public static List<Ad> decode(Reader source, boolean eligibleOnly) throws IOException {
+        List<Ad> ads = new ArrayList<>();
+        decodeInto(source, eligibleOnly, ads);
+        return ads;
+    }
+
+    // Row count and id of the last row of one response, skipped rows included
+    public static final class Rows {
+        public int count;
+        public String lastId;
+    }
+
+    // Same as decode() but appends to the given list; reports every row read,
+    // including rows that were skipped or filtered out
+    public static Rows decodeInto(Reader source, boolean eligibleOnly, List<Ad> ads) throws IOException {
+        Rows rows = new Rows();
+        JsonReader reader = new JsonReader(source);
+        try {
+            reader.beginArray();
+            while (reader.hasNext()) {
+                Ad.Builder row = readRow(reader);
+                rows.count++;
+                rows.lastId = row.getId();
+                Ad ad = build(row);
+                if (ad == null) {
+                    continue;
+                }
+                if (!eligibleOnly || isEligible(ad)) {
+                    ads.add(ad);
+                }
+            }
+            reader.endArray();
+        } catch (IllegalStateException | NumberFormatException e) {
+            throw new IOException("Unexpected ad JSON", e);
+        } finally {
+            reader.close();
+        }
+        return rows;
+    }
+
+    static Ad readAd(JsonReader reader) throws IOException {
+        return build(readRow(reader));
+    }
+
+    private static Ad.Builder readRow(JsonReader reader) throws IOException {
+        Ad.Builder ad = Ad.builder()
+                .title("")
+                .description("")
+                .status("");
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+                continue;
+            }
+
+            switch (name) {
+                case "id":
+                    ad.id(reader.nextString());
+                    break;
+                case "type":
+                    ad.type(reader.nextString());
+                    break;
+                case "title":
+                    ad.title(reader.nextString());
+                    break;
+                case "description":
+                    ad.description(reader.nextString());
+                    break;
+                case "image_url":
+                    ad.imageUrl(reader.nextString());
+                    break;
+                case "redirect_url":
+                    ad.redirectUrl(reader.nextString());
+                    break;
+                case "status":
+                    ad.status(reader.nextString());
+                    break;
+                case "clicks":
+                    ad.clicks(reader.nextInt());
+                    break;
+                case "max_clicks":
+                    ad.maxClicks(reader.nextInt());
+                    break;
+                case "impressions":
+                    ad.impressions(reader.nextInt());
+                    break;
+                case "max_impressions":
+                    ad.maxImpressions(reader.nextInt());
+                    break;
+                case "budget":
+                    ad.budget(reader.nextDouble());
+                    break;
+                case "start_date":
+                    ad.startDate(reader.nextString());
+                    break;
+                case "frequency_cap":
+                    ad.frequencyCap(reader.nextInt());
+                    break;
+                case "target_audience":
+                    ad.targetAudience(reader.nextString());
+                    break;
+                case "updated_at":
+                    ad.updatedAt(reader.nextString());
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+        return ad;
+    }
+
+    private static Ad build(Ad.Builder ad) {
+        if (ad.getId() == null || ad.getImageUrl() == null || ad.getRedirectUrl() == null) {
+            Log.e("AdJsonDecoder", "Skipping ad with missing required fields: " + ad.getId());
+            return null;
+        }
+        return ad.build();
+    }
+
+    public static boolean isEligible(Ad ad) {
+        return ad != null &&
+               "active".equals(ad.getStatus()) &&
+               (!ad.hasMaxClicks() || ad.getClicks() < ad.getMaxClicks()) &&
+               (!ad.hasMaxImpressions() || ad.getImpressions() < ad.getMaxImpressions());
+    }
+}
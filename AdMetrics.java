@@ -0,0 +1,48 @@
+// Pluggable metrics sink for the ad SDK. Install one with AdRuntime.setMetrics();
+// the default NOOP keeps every instrumented hot path at a single virtual call.
+// Implementations must be thread-safe and must not block.
+public interface AdMetrics {
+    String FETCH_LATENCY = "ads.fetch.latency"; // Request sent to response headers
+    String FETCH_ERRORS = "ads.fetch.errors";
+    String FETCH_ADS = "ads.fetch.ads"; // Rows decoded per fetch
+    String PARSE_TIME = "ads.fetch.parse";
+    String RESPONSE_BYTES = "http.response.bytes";
+    String EVENT_RPC_LATENCY = "ads.rpc.events.latency";
+    String EVENT_RPC_ERRORS = "ads.rpc.events.errors";
+    String JOURNAL_DROPPED = "ads.journal.dropped"; // Unsent segments discarded because the journal was full
+    String IMAGE_LOAD_TIME = "ads.image.load";
+    String IMAGE_LOAD_ERRORS = "ads.image.errors";
+    String ROTATION_DRIFT = "ads.rotation.drift"; // How late each rotation tick fired
+    String RELOAD_DELAY = "ads.reload.delay"; // Wait until the next inventory sync, as scheduled
+    String RELOAD_FAILURES = "ads.reload.failures"; // Consecutive failed syncs when the next one is scheduled
+    // Why the next sync was scheduled, one counter per decision
+    String RELOAD_RESUME = "ads.reload.resume";
+    String RELOAD_CHANGED = "ads.reload.changed";
+    String RELOAD_UNCHANGED = "ads.reload.unchanged";
+    String RELOAD_BACKOFF = "ads.reload.backoff";
+    String RELOAD_CIRCUIT_OPEN = "ads.reload.circuit_open";
+    String RELOAD_REALTIME_UP = "ads.reload.realtime_up";
+    String RELOAD_REALTIME_DOWN = "ads.reload.realtime_down";
+
+    AdMetrics NOOP = new AdMetrics() {
+        @Override
+        public void increment(String name, long delta) {
+        }
+
+        @Override
+        public void recordValue(String name, long value) {
+        }
+
+        @Override
+        public void recordLatency(String name, long nanos) {
+        }
+    };
+
+    void increment(String name, long delta);
+
+    // Histogram of a unitless value such as a size or a count
+    void recordValue(String name, long value);
+
+    // Histogram of a duration measured with System.nanoTime()
+    void recordLatency(String name, long nanos);
+}
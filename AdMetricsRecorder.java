@@ -0,0 +1,104 @@
+// In-memory AdMetrics implementation. Counters are LongAdders and histograms are
+// AdHistograms, created on first use and never removed. startPeriodicDump() logs an
+// interval summary and resets it, so each line covers only the last interval.
+public class AdMetricsRecorder implements AdMetrics {
+    private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private final Map<String, AdHistogram> histograms = new ConcurrentHashMap<>();
+    private final Map<String, AdHistogram> latencies = new ConcurrentHashMap<>();
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private Runnable dumpRunnable;
+
+    @Override
+    public void increment(String name, long delta) {
+        LongAdder counter = counters.get(name);
+        if (counter == null) {
+            counter = counters.computeIfAbsent(name, key -> new LongAdder());
+        }
+        counter.add(delta);
+    }
+
+    @Override
+    public void recordValue(String name, long value) {
+        histogram(histograms, name).record(value);
+    }
+
+    @Override
+    public void recordLatency(String name, long nanos) {
+        // Microsecond resolution is plenty and keeps the buckets dense
+        histogram(latencies, name).record(nanos / 1000);
+    }
+
+    private static AdHistogram histogram(Map<String, AdHistogram> map, String name) {
+        AdHistogram histogram = map.get(name);
+        if (histogram == null) {
+            histogram = map.computeIfAbsent(name, key -> new AdHistogram());
+        }
+        return histogram;
+    }
+
+    public long getCount(String name) {
+        LongAdder counter = counters.get(name);
+        return counter != null ? counter.sum() : 0;
+    }
+
+    public AdHistogram getHistogram(String name) {
+        AdHistogram histogram = latencies.get(name);
+        return histogram != null ? histogram : histograms.get(name);
+    }
+
+    public void startPeriodicDump(long intervalMs) {
+        stopPeriodicDump();
+        dumpRunnable = new Runnable() {
+            @Override
+            public void run() {
+                Log.d("AdMetrics", summary(true));
+                handler.postDelayed(this, intervalMs);
+            }
+        };
+        handler.postDelayed(dumpRunnable, intervalMs);
+    }
+
+    public void stopPeriodicDump() {
+        if (dumpRunnable != null) {
+            handler.removeCallbacks(dumpRunnable);
+            dumpRunnable = null;
+        }
+    }
+
+    public String summary(boolean reset) {
+        StringBuilder summary = new StringBuilder();
+        for (String name : new TreeSet<>(counters.keySet())) {
+            LongAdder counter = counters.get(name);
+            summary.append('\n').append(name).append(": ").append(reset ? counter.sumThenReset() : counter.sum());
+        }
+        for (String name : new TreeSet<>(latencies.keySet())) {
+            AdHistogram histogram = latencies.get(name);
+            summary.append('\n').append(name)
+                    .append(": n=").append(histogram.getCount())
+                    .append(" p50=").append(millis(histogram.getValueAtQuantile(0.5)))
+                    .append(" p90=").append(millis(histogram.getValueAtQuantile(0.9)))
+                    .append(" p99=").append(millis(histogram.getValueAtQuantile(0.99)))
+                    .append(" max=").append(millis(histogram.getMax())).append(" ms");
+            if (reset) {
+                histogram.reset();
+            }
+        }
+        for (String name : new TreeSet<>(histograms.keySet())) {
+            AdHistogram histogram = histograms.get(name);
+            summary.append('\n').append(name)
+                    .append(": n=").append(histogram.getCount())
+                    .append(" p50=").append(histogram.getValueAtQuantile(0.5))
+                    .append(" p90=").append(histogram.getValueAtQuantile(0.9))
+                    .append(" p99=").append(histogram.getValueAtQuantile(0.99))
+                    .append(" max=").append(histogram.getMax());
+            if (reset) {
+                histogram.reset();
+            }
+        }
+        return summary.length() == 0 ? "no metrics recorded" : summary.substring(1);
+    }
+
+    private static String millis(long micros) {
+        return String.format(Locale.US, "%.1f", micros / 1000.0);
+    }
+}
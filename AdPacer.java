@@ -0,0 +1,213 @@
+// Spreads delivery across a placement's ads with one token bucket per ad. Each
+// in-flight ad earns exposures at a rate set by its share of the placement's budget,
+// scaled down as its remaining click or impression headroom shrinks; every tick
+// shows the ad with the most banked tokens. peek() only looks, so look-ahead picks
+// cost nothing; commit() charges the ad that is actually shown and returns its
+// display time, which follows the total rate so rotation slows as campaigns run
+// out. Times are monotonic milliseconds (SystemClock.elapsedRealtime()) and
+// neither method allocates.
+public final class AdPacer {
+    public static final long MIN_DISPLAY_TIME = 5000; // Rotation while every campaign has full headroom
+    public static final long MAX_DISPLAY_TIME = 15000;
+    private static final double DEFAULT_BUDGET = 100; // Column default for campaigns saved without one
+    private static final double BURST = 2; // Exposures an ad may bank while others are showing
+
+    private final Ad[] ads;
+    private final double[] budget;
+    private final double[] headroom; // Fraction of the tighter click or impression limit left
+    private final long[] startAt; // Flight start on the monotonic clock
+    private final double[] tokens; // Banked as of lastRefill
+    private final Map<String, Integer> positions = new HashMap<>(); // Ad id to index
+    private final long wallClockOffset; // Wall minus monotonic time, for the frequency cap filter
+    private long lastRefill;
+    private long displayTime = MIN_DISPLAY_TIME;
+
+    private AdPacer(Ad[] ads, long wallClockOffset) {
+        int n = ads.length;
+        this.ads = ads;
+        this.budget = new double[n];
+        this.headroom = new double[n];
+        this.startAt = new long[n];
+        this.tokens = new double[n];
+        this.wallClockOffset = wallClockOffset;
+    }
+
+    // Built once per inventory change from the same list as the targeting index.
+    // Ads that were already being paced keep their banked tokens; previous may be null.
+    public static AdPacer build(List<Ad> adList, AdPacer previous, long now, long wallNow) {
+        AdPacer pacer = new AdPacer(adList.toArray(new Ad[0]), wallNow - now);
+
+        if (previous != null) {
+            pacer.lastRefill = previous.lastRefill;
+        }
+
+        for (int i = 0; i < pacer.ads.length; i++) {
+            Ad ad = pacer.ads[i];
+            pacer.positions.put(ad.getId(), i);
+            pacer.budget[i] = ad.hasBudget() ? Math.max(0, ad.getBudget()) : DEFAULT_BUDGET;
+            pacer.headroom[i] = Math.min(
+                    remaining(ad.hasMaxClicks(), ad.getClicks(), ad.getMaxClicks()),
+                    remaining(ad.hasMaxImpressions(), ad.getImpressions(), ad.getMaxImpressions()));
+            long start = parseEpochMillis(ad.getStartDate());
+            pacer.startAt[i] = start == Long.MIN_VALUE ? Long.MIN_VALUE : start - pacer.wallClockOffset;
+
+            Integer position = previous != null ? previous.positions.get(ad.getId()) : null;
+            pacer.tokens[i] = position != null ? previous.tokens[position] : 1;
+        }
+        return pacer;
+    }
+
+    private static double remaining(boolean limited, int count, int max) {
+        if (!limited) {
+            return 1;
+        }
+        return max > 0 ? Math.max(0, (double) (max - count) / max) : 0;
+    }
+
+    // The ad with the most tokens, refilled up to now, among those set in eligible
+    // (null means all) that the filter accepts. Ties go to the first ad after a random
+    // offset. Changes nothing; returns null if no ad qualifies.
+    public Ad peek(Random random, long[] eligible, AdSelector.Filter filter, long now) {
+        int n = ads.length;
+        double totalBudget = totalBudget(eligible, now);
+        if (totalBudget == 0) {
+            return null;
+        }
+
+        long elapsed = elapsedSince(now);
+        int best = -1;
+        double bestTokens = 0;
+        int offset = random.nextInt(n);
+        for (int k = 0; k < n; k++) {
+            int i = offset + k < n ? offset + k : offset + k - n;
+            if (!isDeliverable(i, eligible, now)) {
+                continue;
+            }
+            double banked = Math.min(BURST, tokens[i] + rate(i, totalBudget) * elapsed);
+            if ((best < 0 || banked > bestTokens) && filter.accept(ads[i], now + wallClockOffset)) {
+                best = i;
+                bestTokens = banked;
+            }
+        }
+        return best >= 0 ? ads[best] : null;
+    }
+
+    // Refills every deliverable ad and takes one exposure from the ad being shown.
+    // Returns how long it should stay on screen; ads no longer paced cost nothing.
+    public long commit(Ad ad, long[] eligible, long now) {
+        int n = ads.length;
+        long elapsed = elapsedSince(now);
+        lastRefill = now;
+
+        double totalBudget = totalBudget(eligible, now);
+        double totalRate = 0;
+        if (totalBudget > 0) {
+            for (int i = 0; i < n; i++) {
+                if (isDeliverable(i, eligible, now)) {
+                    double rate = rate(i, totalBudget);
+                    tokens[i] = Math.min(BURST, tokens[i] + rate * elapsed);
+                    totalRate += rate;
+                }
+            }
+        }
+        displayTime = totalRate > 0
+                ? Math.max(MIN_DISPLAY_TIME, Math.min(MAX_DISPLAY_TIME, (long) (1 / totalRate)))
+                : MAX_DISPLAY_TIME;
+
+        Integer position = positions.get(ad.getId());
+        if (position != null) {
+            // A debt carries over, so an ad shown early waits longer for its next turn
+            tokens[position] = Math.max(-BURST, tokens[position] - 1);
+        }
+        return displayTime;
+    }
+
+    private long elapsedSince(long now) {
+        return lastRefill > 0 ? Math.max(0, now - lastRefill) : 0;
+    }
+
+    private double totalBudget(long[] eligible, long now) {
+        double totalBudget = 0;
+        for (int i = 0; i < ads.length; i++) {
+            if (isDeliverable(i, eligible, now)) {
+                totalBudget += budget[i];
+            }
+        }
+        return totalBudget;
+    }
+
+    private double rate(int i, double totalBudget) {
+        return budget[i] / totalBudget * headroom[i] / MIN_DISPLAY_TIME;
+    }
+
+    private boolean isDeliverable(int i, long[] eligible, long now) {
+        return budget[i] > 0 && headroom[i] > 0 && startAt[i] <= now && AdTargetingIndex.isSet(eligible, i);
+    }
+
+    // How long the ad passed to the last commit() should stay on screen
+    public long getDisplayTime() {
+        return displayTime;
+    }
+
+    public int size() {
+        return ads.length;
+    }
+
+    // Parses the ISO 8601 timestamps PostgREST returns, e.g. 2024-04-01T08:30:00.123456+02:00.
+    // Returns Long.MIN_VALUE for null or unreadable values, which never delays delivery.
+    static long parseEpochMillis(String value) {
+        if (value == null) {
+            return Long.MIN_VALUE;
+        }
+        try {
+            int year = Integer.parseInt(value.substring(0, 4));
+            int month = Integer.parseInt(value.substring(5, 7));
+            int day = Integer.parseInt(value.substring(8, 10));
+            int hour = Integer.parseInt(value.substring(11, 13));
+            int minute = Integer.parseInt(value.substring(14, 16));
+            int second = Integer.parseInt(value.substring(17, 19));
+
+            int position = 19;
+            long millis = 0;
+            if (position < value.length() && value.charAt(position) == '.') {
+                position++;
+                int digits = 0;
+                while (position < value.length() && Character.isDigit(value.charAt(position))) {
+                    if (digits < 3) {
+                        millis = millis * 10 + (value.charAt(position) - '0');
+                    }
+                    digits++;
+                    position++;
+                }
+                for (; digits < 3; digits++) {
+                    millis *= 10;
+                }
+            }
+
+            long offsetMinutes = 0;
+            if (position < value.length() && value.charAt(position) != 'Z') {
+                int sign = value.charAt(position) == '-' ? -1 : 1;
+                int offsetHours = Integer.parseInt(value.substring(position + 1, position + 3));
+                int extraMinutes = value.length() >= position + 6
+                        ? Integer.parseInt(value.substring(position + 4, position + 6)) : 0;
+                offsetMinutes = sign * (offsetHours * 60L + extraMinutes);
+            }
+
+            long days = daysFromCivil(year, month, day);
+            long seconds = ((days * 24 + hour) * 60 + minute) * 60 + second;
+            return seconds * 1000 + millis - offsetMinutes * 60000;
+        } catch (RuntimeException e) {
+            return Long.MIN_VALUE;
+        }
+    }
+
+    // Days since 1970-01-01 in the proleptic Gregorian calendar
+    private static long daysFromCivil(int year, int month, int day) {
+        year -= month <= 2 ? 1 : 0;
+        long era = Math.floorDiv(year, 400);
+        long yearOfEra = year - era * 400;
+        long dayOfYear = (153L * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+}
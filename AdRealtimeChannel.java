@@ -0,0 +1,228 @@
+// Subscribes to ad changes over the Supabase Realtime (Phoenix) websocket. It follows
+// ads_realtime, which mirrors ads without the per-click and per-impression updates.
+// One socket carries every joined topic; it reconnects with backoff until closed.
+// The URL is configurable so a local stand-in server can replace Supabase.
+public class AdRealtimeChannel extends WebSocketListener {
+    private static final String TOPIC = "realtime:public:ads_realtime";
+    private static final long HEARTBEAT_INTERVAL = 25000; // Server drops sockets silent for 60 seconds
+    private static final long BASE_RECONNECT_DELAY = 1000;
+    private static final long MAX_RECONNECT_DELAY = 60000;
+    private static final int NORMAL_CLOSURE = 1000;
+
+    private final OkHttpClient client;
+    private final String url;
+    private final Listener listener;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Random random = new Random();
+    private final Runnable heartbeatRunnable = this::sendHeartbeat;
+    private final Runnable reconnectRunnable = this::connect;
+    private WebSocket webSocket;
+    private int messageRef = 0;
+    private int reconnectAttempts = 0;
+    private boolean open = false;
+    private boolean joined = false;
+
+    // Callbacks arrive on the main thread
+    public interface Listener {
+        void onSubscribed();
+        void onAdChanged(Ad ad);
+        void onAdDeleted(String adId);
+        void onUnsubscribed();
+    }
+
+    public AdRealtimeChannel(OkHttpClient client, String url, Listener listener) {
+        this.client = client;
+        this.url = url;
+        this.listener = listener;
+    }
+
+    public void open() {
+        if (open) {
+            return;
+        }
+        open = true;
+        reconnectAttempts = 0;
+        connect();
+    }
+
+    public void close() {
+        if (!open) {
+            return;
+        }
+        open = false;
+        handler.removeCallbacks(heartbeatRunnable);
+        handler.removeCallbacks(reconnectRunnable);
+        if (webSocket != null) {
+            webSocket.close(NORMAL_CLOSURE, null);
+            webSocket = null;
+        }
+        setJoined(false);
+    }
+
+    private void connect() {
+        if (!open) {
+            return;
+        }
+        Request request = new Request.Builder().url(url).build();
+        webSocket = client.newWebSocket(request, this);
+    }
+
+    @Override
+    public void onOpen(@NonNull WebSocket socket, @NonNull Response response) {
+        handler.post(() -> {
+            if (socket != webSocket) {
+                return;
+            }
+
+            // Only row changes for the placements this client renders
+            try {
+                JSONObject change = new JSONObject()
+                        .put("event", "*")
+                        .put("schema", "public")
+                        .put("table", "ads_realtime")
+                        .put("filter", "type=in.(banner,interstitial)");
+                JSONObject config = new JSONObject()
+                        .put("postgres_changes", new JSONArray().put(change));
+                send(TOPIC, "phx_join", new JSONObject().put("config", config));
+            } catch (JSONException e) {
+                Log.e("AdRealtimeChannel", "Error creating join message", e);
+                return;
+            }
+            handler.postDelayed(heartbeatRunnable, HEARTBEAT_INTERVAL);
+        });
+    }
+
+    @Override
+    public void onMessage(@NonNull WebSocket socket, @NonNull String text) {
+        final JSONObject message;
+        final Ad ad;
+        final String deletedId;
+        try {
+            message = new JSONObject(text);
+            JSONObject payload = message.optJSONObject("payload");
+            JSONObject data = payload != null ? payload.optJSONObject("data") : null;
+            String type = data != null ? data.optString("type") : "";
+
+            // Decode off the main thread with the same rules as a fetch
+            if ("INSERT".equals(type) || "UPDATE".equals(type)) {
+                ad = AdJsonDecoder.readAd(new JsonReader(new StringReader(data.getJSONObject("record").toString())));
+                deletedId = null;
+            } else if ("DELETE".equals(type)) {
+                ad = null;
+                deletedId = data.getJSONObject("old_record").optString("id", null);
+            } else {
+                ad = null;
+                deletedId = null;
+            }
+        } catch (JSONException | IOException | RuntimeException e) {
+            Log.e("AdRealtimeChannel", "Ignoring unreadable message", e);
+            return;
+        }
+
+        handler.post(() -> {
+            if (socket != webSocket) {
+                return;
+            }
+
+            String event = message.optString("event");
+            if ("phx_reply".equals(event) && TOPIC.equals(message.optString("topic"))) {
+                JSONObject payload = message.optJSONObject("payload");
+                if (payload != null && "ok".equals(payload.optString("status"))) {
+                    reconnectAttempts = 0;
+                    setJoined(true);
+                } else if (!joined) {
+                    Log.e("AdRealtimeChannel", "Join rejected: " + text);
+                    socket.close(NORMAL_CLOSURE, null);
+                    scheduleReconnect();
+                }
+            } else if ("phx_error".equals(event) || "phx_close".equals(event)) {
+                socket.close(NORMAL_CLOSURE, null);
+                scheduleReconnect();
+            } else if (ad != null) {
+                listener.onAdChanged(ad);
+            } else if (deletedId != null) {
+                listener.onAdDeleted(deletedId);
+            }
+        });
+    }
+
+    @Override
+    public void onFailure(@NonNull WebSocket socket, @NonNull Throwable t, Response response) {
+        Log.e("AdRealtimeChannel", "Realtime connection failed", t);
+        handler.post(() -> {
+            if (socket == webSocket) {
+                scheduleReconnect();
+            }
+        });
+    }
+
+    // Server-initiated close, e.g. a Realtime restart or an expired token: answer it so
+    // the socket shuts down now, and reconnect without waiting for the peer to drop TCP
+    @Override
+    public void onClosing(@NonNull WebSocket socket, int code, @NonNull String reason) {
+        Log.d("AdRealtimeChannel", "Server closed realtime connection: " + code + " " + reason);
+        // Echoing the code is not always legal (1005 means none was sent), so reply with a normal closure
+        socket.close(NORMAL_CLOSURE, null);
+        handler.post(() -> {
+            if (socket == webSocket) {
+                scheduleReconnect();
+            }
+        });
+    }
+
+    @Override
+    public void onClosed(@NonNull WebSocket socket, int code, @NonNull String reason) {
+        handler.post(() -> {
+            if (socket == webSocket) {
+                scheduleReconnect();
+            }
+        });
+    }
+
+    private void scheduleReconnect() {
+        handler.removeCallbacks(heartbeatRunnable);
+        webSocket = null;
+        setJoined(false);
+        if (!open) {
+            return;
+        }
+
+        long delay = Math.min(MAX_RECONNECT_DELAY, BASE_RECONNECT_DELAY << Math.min(reconnectAttempts, 6));
+        reconnectAttempts++;
+        handler.removeCallbacks(reconnectRunnable);
+        handler.postDelayed(reconnectRunnable, delay / 2 + (long) (random.nextDouble() * delay / 2));
+    }
+
+    private void sendHeartbeat() {
+        if (webSocket == null) {
+            return;
+        }
+        send("phoenix", "heartbeat", new JSONObject());
+        handler.postDelayed(heartbeatRunnable, HEARTBEAT_INTERVAL);
+    }
+
+    private void send(String topic, String event, JSONObject payload) {
+        try {
+            JSONObject message = new JSONObject()
+                    .put("topic", topic)
+                    .put("event", event)
+                    .put("payload", payload)
+                    .put("ref", String.valueOf(++messageRef));
+            webSocket.send(message.toString());
+        } catch (JSONException e) {
+            Log.e("AdRealtimeChannel", "Error creating " + event + " message", e);
+        }
+    }
+
+    private void setJoined(boolean joined) {
+        if (this.joined == joined) {
+            return;
+        }
+        this.joined = joined;
+        if (joined) {
+            listener.onSubscribed();
+        } else {
+            listener.onUnsubscribed();
+        }
+    }
+}
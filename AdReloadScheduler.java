@@ -0,0 +1,147 @@
+// Decides when the next inventory sync runs. Quiet inventories are polled less
+// often, failures back off exponentially and trip a circuit breaker, and every
+// delay is jittered so devices do not poll in lockstep. All decisions run on a
+// background thread; nothing is scheduled while paused.
+public class AdReloadScheduler {
+    private static final long BASE_INTERVAL = 30000; // Poll every 30 seconds while ads are changing
+    private static final long MAX_IDLE_INTERVAL = 5 * 60 * 1000L; // Stretch to 5 minutes when nothing changes
+    private static final long FALLBACK_INTERVAL = 10 * 60 * 1000L; // Safety net while realtime pushes changes
+    private static final long MAX_FALLBACK_INTERVAL = 30 * 60 * 1000L;
+    private static final long BASE_BACKOFF = 5000; // First retry after a failure
+    private static final long MAX_BACKOFF = 5 * 60 * 1000L;
+    private static final int CIRCUIT_THRESHOLD = 5; // Consecutive failures before the circuit opens
+    private static final long CIRCUIT_OPEN_TIME = 10 * 60 * 1000L; // Wait before a single probe sync
+    private static final double JITTER = 0.2; // +/- 20% on steady intervals
+
+    private final HandlerThread thread = new HandlerThread("AdReloadScheduler");
+    private final Handler handler;
+    private final SyncTask syncTask;
+    private final Random random = new Random(); // Seeded per process, so each device has its own phase
+    private final Runnable syncRunnable = this::runSync;
+    private int unchangedStreak = 0;
+    private int consecutiveFailures = 0;
+    private long circuitOpenUntil = 0;
+    private boolean paused = true;
+    private boolean inFlight = false;
+    private boolean realtimeConnected = false;
+
+    public interface SyncTask {
+        // Must eventually call onSyncResult exactly once, on any thread
+        void sync(SyncResultCallback callback);
+    }
+
+    public interface SyncResultCallback {
+        void onSyncResult(boolean success, boolean changed);
+    }
+
+    public AdReloadScheduler(SyncTask syncTask) {
+        this.syncTask = syncTask;
+        thread.start();
+        this.handler = new Handler(thread.getLooper());
+    }
+
+    // Replaces whatever was pending with one immediate sync, unless the circuit is open
+    public void resume() {
+        handler.post(() -> {
+            if (!paused) {
+                return;
+            }
+            paused = false;
+            handler.removeCallbacks(syncRunnable);
+            if (inFlight) {
+                // The pending result schedules the next sync
+                return;
+            }
+
+            long wait = Math.max(0, circuitOpenUntil - SystemClock.elapsedRealtime());
+            schedule(wait > 0 ? AdMetrics.RELOAD_CIRCUIT_OPEN : AdMetrics.RELOAD_RESUME, wait);
+        });
+    }
+
+    // Either way one catch-up sync runs now: for changes made before the channel joined,
+    // or for changes missed while it was down
+    public void setRealtimeConnected(boolean connected) {
+        handler.post(() -> {
+            if (realtimeConnected == connected) {
+                return;
+            }
+            realtimeConnected = connected;
+            if (paused || inFlight || circuitOpenUntil > SystemClock.elapsedRealtime()) {
+                return;
+            }
+            schedule(connected ? AdMetrics.RELOAD_REALTIME_UP : AdMetrics.RELOAD_REALTIME_DOWN, 0);
+        });
+    }
+
+    public void pause() {
+        handler.post(() -> {
+            paused = true;
+            handler.removeCallbacks(syncRunnable);
+        });
+    }
+
+    private void runSync() {
+        if (paused || inFlight) {
+            return;
+        }
+        inFlight = true;
+        syncTask.sync((success, changed) -> handler.post(() -> onSyncResult(success, changed)));
+    }
+
+    private void onSyncResult(boolean success, boolean changed) {
+        inFlight = false;
+
+        if (success) {
+            if (consecutiveFailures >= CIRCUIT_THRESHOLD) {
+                Log.d("AdReloadScheduler", "Circuit closed after " + consecutiveFailures + " failures");
+            }
+            consecutiveFailures = 0;
+            circuitOpenUntil = 0;
+            unchangedStreak = changed ? 0 : unchangedStreak + 1;
+        } else {
+            consecutiveFailures++;
+        }
+
+        if (paused) {
+            return;
+        }
+
+        if (!success) {
+            if (consecutiveFailures >= CIRCUIT_THRESHOLD) {
+                // Stop hammering a failing backend; a single probe runs after the wait
+                circuitOpenUntil = SystemClock.elapsedRealtime() + CIRCUIT_OPEN_TIME;
+                schedule(AdMetrics.RELOAD_CIRCUIT_OPEN, jittered(CIRCUIT_OPEN_TIME));
+            } else {
+                // Equal jitter: half the backoff is fixed, the other half random
+                long backoff = Math.min(MAX_BACKOFF, BASE_BACKOFF << (consecutiveFailures - 1));
+                schedule(AdMetrics.RELOAD_BACKOFF, backoff / 2 + (long) (random.nextDouble() * backoff / 2));
+            }
+        } else {
+            long baseInterval = realtimeConnected ? FALLBACK_INTERVAL : BASE_INTERVAL;
+            if (changed) {
+                schedule(AdMetrics.RELOAD_CHANGED, jittered(baseInterval));
+            } else {
+                // Double the interval for every quiet poll in a row, up to the cap
+                long maxInterval = realtimeConnected ? MAX_FALLBACK_INTERVAL : MAX_IDLE_INTERVAL;
+                long interval = Math.min(maxInterval, baseInterval << Math.min(unchangedStreak, 4));
+                schedule(AdMetrics.RELOAD_UNCHANGED, jittered(interval));
+            }
+        }
+    }
+
+    private long jittered(long interval) {
+        return (long) (interval * (1 - JITTER + random.nextDouble() * 2 * JITTER));
+    }
+
+    private void schedule(String decision, long delayMs) {
+        handler.removeCallbacks(syncRunnable);
+        handler.postDelayed(syncRunnable, delayMs);
+
+        // decision is the AdMetrics counter for why this sync was scheduled
+        AdMetrics metrics = AdRuntime.metrics();
+        metrics.increment(decision, 1);
+        metrics.recordLatency(AdMetrics.RELOAD_DELAY, delayMs * 1000000L);
+        metrics.recordValue(AdMetrics.RELOAD_FAILURES, consecutiveFailures);
+        Log.d("AdReloadScheduler", "Next sync in " + delayMs + " ms (" + decision + ")");
+    }
+}
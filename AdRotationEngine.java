@@ -0,0 +1,342 @@
+// Rotates every banner slot in the process from one inventory view, one pacer and
+// one main-thread timer. Deadlines of on-screen slots sit in a priority queue and a
+// single runnable fires for the earliest one, rotating every slot due within
+// TICK_SLOP. New ads are applied together in the next frame. Paused and off-screen
+// slots leave the queue, so a tick costs only as much as the visible slots. Main thread only.
+public class AdRotationEngine {
+    private static final long TICK_SLOP = 50; // Slots due this close together rotate in one wakeup
+    private static final long DEFAULT_PREFETCH_BUDGET = 4 * 1024 * 1024; // Decoded look-ahead bytes across all slots
+
+    private final AdRuntime runtime;
+    private final AdInventoryStore inventoryStore;
+    private final AdFrequencyCapStore frequencyCapStore;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Random random = new Random();
+    private final List<Slot> slots = new ArrayList<>();
+    private final List<Slot> visibleSlots = new ArrayList<>();
+    private final PriorityQueue<Slot> deadlines = new PriorityQueue<>(11, (a, b) -> Long.compare(a.deadline, b.deadline));
+    private final List<Slot> pendingUpdates = new ArrayList<>();
+    private final AdInventoryStore.OnInventoryChangedListener inventoryListener = this::updateAdsList;
+    private final Runnable tickRunnable = this::onTick;
+    private final Runnable retryRunnable = this::retryEmptySlots;
+    private final Choreographer.FrameCallback frameCallback = this::applyUpdates;
+    private final AdSelector.Filter uniqueFilter;
+    private List<Ad> adsList = Collections.emptyList(); // Immutable view from the inventory store
+    private AdPacer pacer;
+    private AdTargetingIndex targetingIndex = AdTargetingIndex.EMPTY;
+    private Slot selecting;
+    private long tickAt = Long.MAX_VALUE;
+    private boolean frameScheduled = false;
+    private int activeSlots = 0;
+
+    public final class Slot {
+        private final BannerAdView view;
+        private final BannerAdView.OnScreenChangeListener onScreenChangeListener =
+                onScreen -> onSlotScreenChanged(this, onScreen);
+        private boolean paused = false;
+        private boolean visible = false;
+        private boolean queued = false;
+        private boolean hiddenEmpty = false;
+        private long deadline;
+        private long remainingDwell = 0; // Display time left on the current ad when the slot was suspended
+        private Ad nextAd;
+        private Ad pendingAd;
+        private long prefetchBudgetBytes = DEFAULT_PREFETCH_BUDGET;
+
+        private Slot(BannerAdView view) {
+            this.view = view;
+        }
+
+        public void setPrefetchBudgetBytes(long prefetchBudgetBytes) {
+            this.prefetchBudgetBytes = prefetchBudgetBytes;
+        }
+    }
+
+    AdRotationEngine(AdRuntime runtime) {
+        this.runtime = runtime;
+        this.inventoryStore = runtime.getInventoryStore();
+        this.frequencyCapStore = runtime.getFrequencyCapStore();
+        // Also skips ads another visible slot is showing; selecting is the slot asking
+        this.uniqueFilter = (ad, now) -> !isShownElsewhere(selecting, ad) && frequencyCapStore.accept(ad, now);
+    }
+
+    // The slot starts rotating as soon as the banner is on screen
+    public Slot register(BannerAdView view) {
+        if (slots.isEmpty()) {
+            inventoryStore.addOnInventoryChangedListener(AdInventoryStore.TYPE_BANNER, inventoryListener);
+            // The store may already hold banners from its snapshot or another placement's fetch
+            updateAdsList(inventoryStore.getAds(AdInventoryStore.TYPE_BANNER));
+        }
+
+        Slot slot = new Slot(view);
+        slots.add(slot);
+        view.setOnScreenChangeListener(slot.onScreenChangeListener);
+        setActive(true);
+        showSlot(slot);
+        return slot;
+    }
+
+    public void unregister(Slot slot) {
+        pause(slot);
+        slot.view.setOnScreenChangeListener(null);
+        slots.remove(slot);
+        if (slots.isEmpty()) {
+            inventoryStore.removeOnInventoryChangedListener(AdInventoryStore.TYPE_BANNER, inventoryListener);
+            handler.removeCallbacks(retryRunnable);
+        }
+    }
+
+    public void pause(Slot slot) {
+        if (slot.paused) {
+            return;
+        }
+        slot.paused = true;
+        slot.nextAd = null;
+        slot.hiddenEmpty = false;
+        suspendSlot(slot);
+        slot.view.setVisibility(View.GONE);
+        setActive(false);
+    }
+
+    public void resume(Slot slot) {
+        if (!slot.paused) {
+            return;
+        }
+        slot.paused = false;
+        setActive(true);
+        showSlot(slot);
+    }
+
+    // Inventory is polled while any slot is unpaused
+    private void setActive(boolean active) {
+        activeSlots += active ? 1 : -1;
+        if (active && activeSlots == 1) {
+            inventoryStore.resumePolling();
+        } else if (!active && activeSlots == 0) {
+            inventoryStore.pausePolling();
+        }
+    }
+
+    private void updateAdsList(List<Ad> newAdsList) {
+        adsList = newAdsList;
+        pacer = AdPacer.build(adsList, pacer, SystemClock.elapsedRealtime(), System.currentTimeMillis());
+        targetingIndex = AdTargetingIndex.build(adsList);
+
+        for (int i = 0; i < slots.size(); i++) {
+            Slot slot = slots.get(i);
+            if (adsList.isEmpty()) {
+                suspendSlot(slot);
+                slot.remainingDwell = 0;
+                slot.view.setVisibility(View.GONE);
+            } else if (!slot.queued && slot.pendingAd == null) {
+                showSlot(slot);
+            }
+        }
+
+        Log.d("AdRotationEngine", "Updated ads list. Count: " + adsList.size());
+    }
+
+    // Rotation starts once the banner is actually laid out on screen
+    private void showSlot(Slot slot) {
+        if (slot.paused) {
+            return;
+        }
+        if (adsList.isEmpty()) {
+            slot.view.setVisibility(View.GONE);
+            return;
+        }
+        slot.hiddenEmpty = false;
+        slot.view.setVisibility(View.VISIBLE);
+        resumeSlot(slot);
+    }
+
+    // Scrolled out of a list, covered, hidden or detached: no timers, loads or UI updates
+    // run until the banner is back, and the current ad then gets the rest of its time
+    private void onSlotScreenChanged(Slot slot, boolean onScreen) {
+        if (onScreen) {
+            resumeSlot(slot);
+        } else {
+            suspendSlot(slot);
+        }
+    }
+
+    private void suspendSlot(Slot slot) {
+        if (slot.visible) {
+            slot.visible = false;
+            visibleSlots.remove(slot);
+        }
+        if (slot.queued) {
+            slot.queued = false;
+            deadlines.remove(slot);
+            slot.remainingDwell = Math.max(0, slot.deadline - SystemClock.uptimeMillis());
+            scheduleTick();
+        }
+        if (slot.pendingAd != null) {
+            pendingUpdates.remove(slot);
+            slot.pendingAd = null;
+        }
+        slot.view.cancelPrefetch();
+    }
+
+    private void resumeSlot(Slot slot) {
+        if (slot.paused || slot.queued || slot.pendingAd != null || adsList.isEmpty() || !slot.view.isOnScreen()) {
+            return;
+        }
+        if (!slot.visible) {
+            slot.visible = true;
+            visibleSlots.add(slot);
+        }
+
+        Ad currentAd = slot.view.getCurrentAd();
+        long remainingDwell = slot.remainingDwell;
+        slot.remainingDwell = 0;
+        if (remainingDwell > 0 && currentAd != null && inventoryStore.contains(currentAd.getId())
+                && !isShownElsewhere(slot, currentAd)) {
+            schedule(slot, remainingDwell);
+        } else if (!showNextAd(slot)) {
+            schedule(slot, AdPacer.MAX_DISPLAY_TIME);
+        }
+        scheduleTick();
+    }
+
+    private void onTick() {
+        tickAt = Long.MAX_VALUE;
+        long now = SystemClock.uptimeMillis();
+        while (!deadlines.isEmpty() && deadlines.peek().deadline <= now + TICK_SLOP) {
+            Slot slot = deadlines.poll();
+            slot.queued = false;
+
+            // A late tick means the main thread was busy when the ad should have changed
+            AdRuntime.metrics().recordLatency(AdMetrics.ROTATION_DRIFT,
+                    Math.max(0, now - slot.deadline) * 1000000L);
+            // A new ad is scheduled for its own display time once it is applied;
+            // a slot that keeps its ad tries again after the longest display time
+            if (!showNextAd(slot)) {
+                schedule(slot, AdPacer.MAX_DISPLAY_TIME);
+            }
+        }
+        scheduleTick();
+    }
+
+    private void schedule(Slot slot, long delay) {
+        if (!slot.visible || slot.paused) {
+            // Hidden while its ad was being picked
+            return;
+        }
+        slot.deadline = SystemClock.uptimeMillis() + delay;
+        slot.queued = true;
+        deadlines.add(slot);
+    }
+
+    // Keeps one runnable posted for the earliest deadline
+    private void scheduleTick() {
+        Slot head = deadlines.peek();
+        if (head == null) {
+            handler.removeCallbacks(tickRunnable);
+            tickAt = Long.MAX_VALUE;
+        } else if (head.deadline < tickAt) {
+            handler.removeCallbacks(tickRunnable);
+            handler.postAtTime(tickRunnable, head.deadline);
+            tickAt = head.deadline;
+        }
+    }
+
+    // Returns true if a new ad will be applied in the next frame
+    private boolean showNextAd(Slot slot) {
+        // Use the ad picked one step ahead if it is still in the inventory, under its cap,
+        // meant for this user and not showing in another slot
+        long now = System.currentTimeMillis();
+        Ad nextAd = slot.nextAd;
+        Ad selectedAd = nextAd != null && inventoryStore.contains(nextAd.getId()) && frequencyCapStore.canShow(nextAd, now)
+                && AdAudienceRule.of(nextAd.getTargetAudience()).matches(runtime.getAudience())
+                && !isShownElsewhere(slot, nextAd)
+                ? nextAd : selectNextAd(slot);
+        if (selectedAd == null) {
+            // Every ad is capped or targeted elsewhere; keep the timer running and try again next tick.
+            // A banner with nothing left to show, or whose own ad is now over its cap, is hidden;
+            // that suspends the slot, so one retry brings it back later.
+            Ad shown = shownAd(slot);
+            if (shown == null || !frequencyCapStore.canShow(shown, now)) {
+                slot.hiddenEmpty = true;
+                slot.view.setVisibility(View.GONE);
+                handler.removeCallbacks(retryRunnable);
+                handler.postDelayed(retryRunnable, AdPacer.MAX_DISPLAY_TIME);
+            }
+            return false;
+        }
+
+        if (slot.pendingAd == null) {
+            pendingUpdates.add(slot);
+        }
+        slot.pendingAd = selectedAd;
+        if (!frameScheduled) {
+            frameScheduled = true;
+            Choreographer.getInstance().postFrameCallback(frameCallback);
+        }
+        return true;
+    }
+
+    private Ad selectNextAd(Slot slot) {
+        long[] eligible = targetingIndex.eligible(runtime.getAudience());
+        long now = SystemClock.elapsedRealtime();
+        selecting = slot;
+        Ad ad = pacer.peek(random, eligible, uniqueFilter, now);
+        selecting = null;
+
+        // Fewer distinct ads than visible slots: repeating one beats an empty slot
+        return ad != null ? ad : pacer.peek(random, eligible, frequencyCapStore, now);
+    }
+
+    // Every slot that rotated this tick changes in the same frame. Only here is an ad
+    // charged to the pacer and scheduled for its display time; the look-ahead pick
+    // made afterwards is free until it is actually shown.
+    private void applyUpdates(long frameTimeNanos) {
+        frameScheduled = false;
+        long now = System.currentTimeMillis();
+        long[] eligible = targetingIndex.eligible(runtime.getAudience());
+        for (int i = 0; i < pendingUpdates.size(); i++) {
+            Slot slot = pendingUpdates.get(i);
+            Ad ad = slot.pendingAd;
+            slot.pendingAd = null;
+            if (ad == null || slot.paused || !slot.visible) {
+                continue;
+            }
+
+            slot.view.setAd(ad);
+            frequencyCapStore.recordExposure(ad, now);
+            // The pacer stretches the display time as campaigns run out of headroom
+            schedule(slot, pacer.commit(ad, eligible, SystemClock.elapsedRealtime()));
+
+            slot.nextAd = selectNextAd(slot);
+            if (slot.nextAd != null && slot.nextAd != ad) {
+                slot.view.prefetch(slot.nextAd, slot.prefetchBudgetBytes);
+            }
+        }
+        pendingUpdates.clear();
+        scheduleTick();
+    }
+
+    private void retryEmptySlots() {
+        for (int i = 0; i < slots.size(); i++) {
+            Slot slot = slots.get(i);
+            if (slot.hiddenEmpty) {
+                showSlot(slot);
+            }
+        }
+    }
+
+    private static Ad shownAd(Slot slot) {
+        return slot.pendingAd != null ? slot.pendingAd : slot.view.getCurrentAd();
+    }
+
+    private boolean isShownElsewhere(Slot slot, Ad ad) {
+        for (int i = 0; i < visibleSlots.size(); i++) {
+            Slot other = visibleSlots.get(i);
+            Ad shown = other != slot ? shownAd(other) : null;
+            if (shown != null && shown.getId().equals(ad.getId())) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,179 @@
+public final class AdRuntime {
+    private static final int MAX_IDLE_CONNECTIONS = 4;
+    private static final int KEEP_ALIVE_MINUTES = 2; // Outlives the reload interval so polls reuse the socket
+    private static final int MAX_REQUESTS = 16;
+    private static final int MAX_REQUESTS_PER_HOST = 8; // All traffic goes to one Supabase host
+
+    private static volatile AdRuntime instance;
+    private static volatile AdMetrics metrics = AdMetrics.NOOP;
+
+    private final Context context;
+    private final AdConnectionStats connectionStats = new AdConnectionStats();
+    private final OkHttpClient httpClient;
+    private final AdApiClient adApiClient;
+    private final AdEventJournal eventJournal;
+    private final AdEventReplayer eventReplayer;
+    private final AdClickPipeline clickPipeline;
+    private final AdSnapshotStore snapshotStore;
+    private final AdImpressionTracker impressionTracker;
+    private final AdFrequencyCapStore frequencyCapStore;
+    private final AdInventoryStore inventoryStore;
+    private final AdRotationEngine rotationEngine;
+    private volatile Map<String, String> audience = Collections.emptyMap();
+    private int interstitialsAttached = 0; // Main thread only
+    private long prefetchedBytes = 0; // Main thread only
+
+    private AdRuntime(Context context) {
+        this.context = context;
+
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(MAX_REQUESTS);
+        dispatcher.setMaxRequestsPerHost(MAX_REQUESTS_PER_HOST);
+
+        this.httpClient = new OkHttpClient.Builder()
+            .dispatcher(dispatcher)
+            .connectionPool(new ConnectionPool(MAX_IDLE_CONNECTIONS, KEEP_ALIVE_MINUTES, TimeUnit.MINUTES))
+            .protocols(Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1))
+            .retryOnConnectionFailure(true)
+            .eventListener(connectionStats)
+            .connectTimeout(30, TimeUnit.SECONDS)
+            .readTimeout(30, TimeUnit.SECONDS)
+            .writeTimeout(30, TimeUnit.SECONDS)
+            .build();
+        this.adApiClient = new AdApiClient(context, httpClient);
+        this.eventJournal = new AdEventJournal(context);
+        this.eventReplayer = new AdEventReplayer(eventJournal, adApiClient);
+        this.clickPipeline = new AdClickPipeline(eventJournal, eventReplayer);
+        this.snapshotStore = new AdSnapshotStore(context);
+        this.impressionTracker = new AdImpressionTracker(eventJournal, eventReplayer);
+        this.frequencyCapStore = new AdFrequencyCapStore(context);
+        this.inventoryStore = new AdInventoryStore(adApiClient, snapshotStore);
+
+        // Server-side counter state updates the shared inventory once for every placement
+        eventReplayer.addOnEventResultListener(inventoryStore::applyCounterResult);
+        // Events journaled by an earlier process go out right away
+        eventReplayer.start();
+
+        // Every banner slot rotates from this one engine and its single timer
+        this.rotationEngine = new AdRotationEngine(this);
+    }
+
+    public static AdRuntime get(Context context) {
+        AdRuntime runtime = instance;
+        if (runtime == null) {
+            synchronized (AdRuntime.class) {
+                runtime = instance;
+                if (runtime == null) {
+                    runtime = new AdRuntime(context.getApplicationContext());
+                    instance = runtime;
+                }
+            }
+        }
+        return runtime;
+    }
+
+    // Static so components can record before the runtime exists, e.g. during its construction
+    public static AdMetrics metrics() {
+        return metrics;
+    }
+
+    public static void setMetrics(AdMetrics newMetrics) {
+        metrics = newMetrics != null ? newMetrics : AdMetrics.NOOP;
+    }
+
+    public Context getContext() {
+        return context;
+    }
+
+    public OkHttpClient getHttpClient() {
+        return httpClient;
+    }
+
+    public AdApiClient getApiClient() {
+        return adApiClient;
+    }
+
+    public AdEventJournal getEventJournal() {
+        return eventJournal;
+    }
+
+    public AdEventReplayer getEventReplayer() {
+        return eventReplayer;
+    }
+
+    public AdClickPipeline getClickPipeline() {
+        return clickPipeline;
+    }
+
+    public AdImpressionTracker getImpressionTracker() {
+        return impressionTracker;
+    }
+
+    public AdFrequencyCapStore getFrequencyCapStore() {
+        return frequencyCapStore;
+    }
+
+    public AdInventoryStore getInventoryStore() {
+        return inventoryStore;
+    }
+
+    // Attributes of the current user that ad target_audience rules are matched against,
+    // e.g. country or age band. Placements pick the change up on their next draw.
+    public void setAudience(Map<String, String> attributes) {
+        audience = AdAudienceRule.attributes(attributes);
+    }
+
+    public Map<String, String> getAudience() {
+        return audience;
+    }
+
+    // Banners count as hidden while an interstitial covers the screen. Driven by the
+    // interstitial view's attach and detach, so an activity destroyed mid-interstitial
+    // cannot leave the flag set.
+    void onInterstitialAttached() {
+        interstitialsAttached++;
+    }
+
+    void onInterstitialDetached() {
+        interstitialsAttached = Math.max(0, interstitialsAttached - 1);
+    }
+
+    public boolean isInterstitialShowing() {
+        return interstitialsAttached > 0;
+    }
+
+    // Decoded bytes held by banner prefetches that are not on screen yet, across every
+    // slot. Returns false, reserving nothing, if bytes more would exceed budgetBytes.
+    boolean reservePrefetch(long bytes, long budgetBytes) {
+        if (prefetchedBytes + bytes > budgetBytes) {
+            return false;
+        }
+        prefetchedBytes += bytes;
+        return true;
+    }
+
+    // Once the prefetched image is shown or evicted
+    void releasePrefetch(long bytes) {
+        prefetchedBytes = Math.max(0, prefetchedBytes - bytes);
+    }
+
+    public AdRotationEngine getRotationEngine() {
+        return rotationEngine;
+    }
+
+    public AdSnapshotStore getSnapshotStore() {
+        return snapshotStore;
+    }
+
+    public AdConnectionStats getConnectionStats() {
+        return connectionStats;
+    }
+
+    public int getIdleConnectionCount() {
+        return httpClient.connectionPool().idleConnectionCount();
+    }
+
+    public int getOpenConnectionCount() {
+        return httpClient.connectionPool().connectionCount();
+    }
+}
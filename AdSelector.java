@@ -0,0 +1,140 @@
+public final class AdSelector {
+    private static final int MAX_FILTERED_DRAWS = 8;
+
+    public static final AdSelector EMPTY = new AdSelector(new Ad[0], new double[0], new int[0]);
+
+    private final Ad[] ads;
+    private final double[] probability;
+    private final int[] alias;
+
+    public interface Filter {
+        boolean accept(Ad ad, long now);
+    }
+
+    private AdSelector(Ad[] ads, double[] probability, int[] alias) {
+        this.ads = ads;
+        this.probability = probability;
+        this.alias = alias;
+    }
+
+    // Builds a Vose alias table once per inventory change so every draw is O(1)
+    public static AdSelector build(List<Ad> adList) {
+        int n = adList.size();
+        if (n == 0) {
+            return EMPTY;
+        }
+
+        Ad[] ads = adList.toArray(new Ad[n]);
+        double[] probability = new double[n];
+        int[] alias = new int[n];
+        double[] scaled = new double[n];
+
+        double totalWeight = 0;
+        for (int i = 0; i < n; i++) {
+            scaled[i] = weightOf(ads[i]);
+            totalWeight += scaled[i];
+        }
+        for (int i = 0; i < n; i++) {
+            scaled[i] = scaled[i] * n / totalWeight;
+        }
+
+        int[] small = new int[n];
+        int[] large = new int[n];
+        int smallCount = 0;
+        int largeCount = 0;
+        for (int i = 0; i < n; i++) {
+            if (scaled[i] < 1.0) {
+                small[smallCount++] = i;
+            } else {
+                large[largeCount++] = i;
+            }
+        }
+
+        while (smallCount > 0 && largeCount > 0) {
+            int less = small[--smallCount];
+            int more = large[--largeCount];
+
+            probability[less] = scaled[less];
+            alias[less] = more;
+
+            scaled[more] = (scaled[more] + scaled[less]) - 1.0;
+            if (scaled[more] < 1.0) {
+                small[smallCount++] = more;
+            } else {
+                large[largeCount++] = more;
+            }
+        }
+
+        // Leftovers are 1.0 up to rounding error
+        while (largeCount > 0) {
+            probability[large[--largeCount]] = 1.0;
+        }
+        while (smallCount > 0) {
+            probability[small[--smallCount]] = 1.0;
+        }
+
+        return new AdSelector(ads, probability, alias);
+    }
+
+    public static double weightOf(Ad ad) {
+        double weight = 1.0;
+
+        // Only factor in click performance
+        if (ad.getMaxClicks() > 0) {
+            double clickRatio = (double) ad.getClicks() / ad.getMaxClicks();
+            weight *= (1.0 - clickRatio); // Lower weight for ads closer to max clicks
+        }
+
+        return Math.max(0.1, weight); // Ensure minimum weight of 0.1
+    }
+
+    public Ad next(Random random) {
+        int n = ads.length;
+        if (n == 0) {
+            return null;
+        }
+
+        int column = random.nextInt(n);
+        return random.nextDouble() < probability[column] ? ads[column] : ads[alias[column]];
+    }
+
+    // Draws until the filter accepts an ad. After a few rejected draws it falls
+    // back to a scan from a random offset; returns null if every ad is rejected.
+    public Ad next(Random random, Filter filter, long now) {
+        return next(random, null, filter, now);
+    }
+
+    // Same, restricted to the ads set in an AdTargetingIndex bitset built from the
+    // same list; null means every ad is eligible
+    public Ad next(Random random, long[] eligible, Filter filter, long now) {
+        int n = ads.length;
+        if (n == 0) {
+            return null;
+        }
+
+        for (int attempt = 0; attempt < MAX_FILTERED_DRAWS; attempt++) {
+            int column = random.nextInt(n);
+            int index = random.nextDouble() < probability[column] ? column : alias[column];
+            if (AdTargetingIndex.isSet(eligible, index) && filter.accept(ads[index], now)) {
+                return ads[index];
+            }
+        }
+
+        int offset = random.nextInt(n);
+        for (int i = 0; i < n; i++) {
+            int index = (offset + i) % n;
+            if (AdTargetingIndex.isSet(eligible, index) && filter.accept(ads[index], now)) {
+                return ads[index];
+            }
+        }
+        return null;
+    }
+
+    public int size() {
+        return ads.length;
+    }
+
+    public boolean isEmpty() {
+        return ads.length == 0;
+    }
+}
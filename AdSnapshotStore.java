@@ -0,0 +1,196 @@
+public class AdSnapshotStore {
+    private static final int MAGIC = 0x4144534E; // "ADSN"
+    private static final short VERSION = 5;
+    private static final long SNAPSHOT_TTL = 24 * 60 * 60 * 1000L; // Ignore snapshots older than a day
+    private static final int HEADER_SIZE = 4 + 2 + 8 + 4; // magic, version, savedAt, count
+    private static final int CHECKSUM_SIZE = 8;
+    private static final int CHECKSUM_CHUNK_SIZE = 8192;
+
+    private final File directory;
+    private final ExecutorService writeExecutor = Executors.newSingleThreadExecutor();
+
+    public static class Snapshot {
+        public final List<Ad> ads;
+        public final String cursor;
+        public final long savedAt;
+
+        Snapshot(List<Ad> ads, String cursor, long savedAt) {
+            this.ads = ads;
+            this.cursor = cursor;
+            this.savedAt = savedAt;
+        }
+    }
+
+    public AdSnapshotStore(Context context) {
+        this.directory = new File(context.getFilesDir(), "ad_snapshots");
+    }
+
+    // Serialized off the calling thread; the file is swapped in atomically
+    public void save(String placement, List<Ad> ads, String cursor) {
+        final List<Ad> adsCopy = new ArrayList<>(ads);
+        writeExecutor.execute(() -> {
+            try {
+                writeSnapshot(placement, adsCopy, cursor);
+            } catch (IOException e) {
+                Log.e("AdSnapshotStore", "Failed to save " + placement + " snapshot", e);
+            }
+        });
+    }
+
+    // Synchronous by design: called once at startup so ads can show before the first fetch
+    public Snapshot load(String placement) {
+        File file = snapshotFile(placement);
+        if (!file.exists()) {
+            return null;
+        }
+
+        try (FileInputStream input = new FileInputStream(file);
+             FileChannel channel = input.getChannel()) {
+            long size = channel.size();
+            if (size < HEADER_SIZE + CHECKSUM_SIZE || size > Integer.MAX_VALUE) {
+                Log.e("AdSnapshotStore", "Discarding truncated " + placement + " snapshot");
+                file.delete();
+                return null;
+            }
+
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            int payloadSize = (int) size - CHECKSUM_SIZE;
+
+            // CRC32.update(ByteBuffer) needs API 26, so the mapping is read in chunks
+            CRC32 crc = new CRC32();
+            ByteBuffer payload = buffer.duplicate();
+            byte[] chunk = new byte[Math.min(payloadSize, CHECKSUM_CHUNK_SIZE)];
+            while (payload.position() < payloadSize) {
+                int length = Math.min(chunk.length, payloadSize - payload.position());
+                payload.get(chunk, 0, length);
+                crc.update(chunk, 0, length);
+            }
+            if (crc.getValue() != buffer.getLong(payloadSize)) {
+                Log.e("AdSnapshotStore", "Discarding corrupt " + placement + " snapshot");
+                file.delete();
+                return null;
+            }
+
+            if (buffer.getInt() != MAGIC || buffer.getShort() != VERSION) {
+                file.delete();
+                return null;
+            }
+
+            long savedAt = buffer.getLong();
+            long age = System.currentTimeMillis() - savedAt;
+            if (age < 0 || age > SNAPSHOT_TTL) {
+                Log.d("AdSnapshotStore", "Ignoring stale " + placement + " snapshot");
+                return null;
+            }
+
+            int count = buffer.getInt();
+            String cursor = readString(buffer);
+            List<Ad> ads = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                Ad ad = Ad.builder()
+                        .id(readString(buffer))
+                        .type(readString(buffer))
+                        .title(readString(buffer))
+                        .description(readString(buffer))
+                        .imageUrl(readString(buffer))
+                        .redirectUrl(readString(buffer))
+                        .status(readString(buffer))
+                        .updatedAt(readString(buffer))
+                        .startDate(readString(buffer))
+                        .targetAudience(readString(buffer))
+                        .clicks(buffer.getInt())
+                        .maxClicks(buffer.getInt())
+                        .impressions(buffer.getInt())
+                        .maxImpressions(buffer.getInt())
+                        .frequencyCap(buffer.getInt())
+                        .budget(buffer.getDouble())
+                        .build();
+                ads.add(ad);
+            }
+            return new Snapshot(ads, cursor, savedAt);
+        } catch (IOException | RuntimeException e) {
+            Log.e("AdSnapshotStore", "Failed to read " + placement + " snapshot", e);
+            file.delete();
+            return null;
+        }
+    }
+
+    public void clear(String placement) {
+        writeExecutor.execute(() -> snapshotFile(placement).delete());
+    }
+
+    private void writeSnapshot(String placement, List<Ad> ads, String cursor) throws IOException {
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(HEADER_SIZE + ads.size() * 256);
+        DataOutputStream output = new DataOutputStream(bytes);
+        output.writeInt(MAGIC);
+        output.writeShort(VERSION);
+        output.writeLong(System.currentTimeMillis());
+        output.writeInt(ads.size());
+        writeString(output, cursor);
+        for (Ad ad : ads) {
+            writeString(output, ad.getId());
+            writeString(output, ad.getType());
+            writeString(output, ad.getTitle());
+            writeString(output, ad.getDescription());
+            writeString(output, ad.getImageUrl());
+            writeString(output, ad.getRedirectUrl());
+            writeString(output, ad.getStatus());
+            writeString(output, ad.getUpdatedAt());
+            writeString(output, ad.getStartDate());
+            writeString(output, ad.getTargetAudience());
+            output.writeInt(ad.getClicks());
+            output.writeInt(ad.getMaxClicks()); // Ad.NO_LIMIT when unlimited
+            output.writeInt(ad.getImpressions());
+            output.writeInt(ad.getMaxImpressions());
+            output.writeInt(ad.getFrequencyCap());
+            output.writeDouble(ad.getBudget()); // Ad.NO_BUDGET when unset
+        }
+        output.flush();
+
+        CRC32 crc = new CRC32();
+        crc.update(bytes.toByteArray(), 0, bytes.size());
+        output.writeLong(crc.getValue());
+        output.flush();
+
+        File tempFile = new File(directory, placement + ".tmp");
+        try (FileOutputStream fileOutput = new FileOutputStream(tempFile)) {
+            bytes.writeTo(fileOutput);
+            fileOutput.getFD().sync();
+        }
+        if (!tempFile.renameTo(snapshotFile(placement))) {
+            tempFile.delete();
+            throw new IOException("Cannot replace " + placement + " snapshot");
+        }
+    }
+
+    private File snapshotFile(String placement) {
+        return new File(directory, placement + ".snap");
+    }
+
+    private static void writeString(DataOutputStream output, String value) throws IOException {
+        if (value == null) {
+            output.writeInt(-1);
+            return;
+        }
+        byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(encoded.length);
+        output.write(encoded);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        if (length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        byte[] encoded = new byte[length];
+        buffer.get(encoded);
+        return new String(encoded, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,5 @@
+public interface AdSyncCallback {
+    void onChanged(List<Ad> changedAds);
+    void onUnchanged();
+    void onError(String error);
+}
@@ -0,0 +1,134 @@
+// Inverted bitset index over one placement's ads, built once per inventory change.
+// Bit i stands for the ad at position i of the list it was built from, the same
+// order AdSelector uses. For every attribute any rule mentions it keeps the ads
+// that do not constrain it plus one bitset per accepted value, so the eligible set
+// for a user is one AND per attribute over n / 64 words.
+public final class AdTargetingIndex {
+    public static final AdTargetingIndex EMPTY = new AdTargetingIndex(0, null, new AttributeIndex[0]);
+
+    private final int size;
+    private final long[] candidates; // Ads whose rule can match someone; null when every ad can
+    private final AttributeIndex[] indexes;
+    private volatile Eligible last; // Attributes change far less often than ads are drawn
+
+    private static final class AttributeIndex {
+        final String key;
+        final long[] unconstrained;
+        final Map<String, long[]> byValue = new HashMap<>();
+
+        AttributeIndex(String key, long[] unconstrained) {
+            this.key = key;
+            this.unconstrained = unconstrained;
+        }
+    }
+
+    private static final class Eligible {
+        final Map<String, String> attributes;
+        final long[] bits;
+
+        Eligible(Map<String, String> attributes, long[] bits) {
+            this.attributes = attributes;
+            this.bits = bits;
+        }
+    }
+
+    private AdTargetingIndex(int size, long[] candidates, AttributeIndex[] indexes) {
+        this.size = size;
+        this.candidates = candidates;
+        this.indexes = indexes;
+    }
+
+    public static AdTargetingIndex build(List<Ad> ads) {
+        int n = ads.size();
+        if (n == 0) {
+            return EMPTY;
+        }
+
+        long[] everyAd = new long[(n + 63) >>> 6];
+        for (int i = 0; i < n; i++) {
+            everyAd[i >>> 6] |= 1L << i;
+        }
+
+        long[] candidates = null;
+        Map<String, AttributeIndex> byKey = new LinkedHashMap<>();
+        for (int i = 0; i < n; i++) {
+            AdAudienceRule rule = AdAudienceRule.of(ads.get(i).getTargetAudience());
+            if (rule.isUntargeted()) {
+                continue;
+            }
+            if (rule.matchesNoOne()) {
+                if (candidates == null) {
+                    candidates = everyAd.clone();
+                }
+                candidates[i >>> 6] &= ~(1L << i);
+                continue;
+            }
+
+            for (Map.Entry<String, Set<String>> clause : rule.getClauses().entrySet()) {
+                AttributeIndex index = byKey.get(clause.getKey());
+                if (index == null) {
+                    index = new AttributeIndex(clause.getKey(), everyAd.clone());
+                    byKey.put(clause.getKey(), index);
+                }
+                index.unconstrained[i >>> 6] &= ~(1L << i);
+                for (String value : clause.getValue()) {
+                    long[] bits = index.byValue.get(value);
+                    if (bits == null) {
+                        bits = new long[everyAd.length];
+                        index.byValue.put(value, bits);
+                    }
+                    bits[i >>> 6] |= 1L << i;
+                }
+            }
+        }
+
+        if (candidates == null && !byKey.isEmpty()) {
+            candidates = everyAd;
+        }
+        return new AdTargetingIndex(n, candidates, byKey.values().toArray(new AttributeIndex[0]));
+    }
+
+    // Bitset of the ads the user may see, or null when no ad is targeted. Attributes
+    // must come from AdAudienceRule.attributes(); the result for the last map is reused.
+    public long[] eligible(Map<String, String> attributes) {
+        if (candidates == null) {
+            return null;
+        }
+        Eligible cached = last;
+        if (cached != null && cached.attributes == attributes) {
+            return cached.bits;
+        }
+        long[] bits = computeEligible(attributes);
+        last = new Eligible(attributes, bits);
+        return bits;
+    }
+
+    public long[] computeEligible(Map<String, String> attributes) {
+        if (candidates == null) {
+            return null;
+        }
+        long[] bits = candidates.clone();
+        for (AttributeIndex index : indexes) {
+            String value = attributes.get(index.key);
+            long[] matching = value != null ? index.byValue.get(value) : null;
+            if (matching == null) {
+                for (int w = 0; w < bits.length; w++) {
+                    bits[w] &= index.unconstrained[w];
+                }
+            } else {
+                for (int w = 0; w < bits.length; w++) {
+                    bits[w] &= index.unconstrained[w] | matching[w];
+                }
+            }
+        }
+        return bits;
+    }
+
+    public static boolean isSet(long[] bits, int position) {
+        return bits == null || (bits[position >>> 6] & (1L << position)) != 0;
+    }
+
+    public int size() {
+        return size;
+    }
+}
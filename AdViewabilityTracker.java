@@ -0,0 +1,94 @@
+public class AdViewabilityTracker implements Runnable {
+    private static final int MIN_VISIBLE_PERCENT = 50; // At least half the ad on screen...
+    private static final long MIN_VISIBLE_TIME = 1000; // ...for one continuous second
+
+    private final View view;
+    private final AdImpressionTracker impressionTracker;
+    private final Rect visibleRect = new Rect();
+    private String adId;
+    private long visibleSince = 0;
+    private boolean paused = false;
+
+    public AdViewabilityTracker(View view, AdImpressionTracker impressionTracker) {
+        this.view = view;
+        this.impressionTracker = impressionTracker;
+    }
+
+    // Starts watching for one viewable impression of the given ad
+    public void track(String adId) {
+        stop();
+        if (adId == null) {
+            return;
+        }
+        this.adId = adId;
+        paused = false;
+        check();
+    }
+
+    public void stop() {
+        view.removeCallbacks(this);
+        adId = null;
+        visibleSince = 0;
+    }
+
+    // Stops checking while the view is off screen; the pending impression is kept
+    public void pause() {
+        paused = true;
+        view.removeCallbacks(this);
+        visibleSince = 0;
+    }
+
+    public void resume() {
+        paused = false;
+        check();
+    }
+
+    // Called when the view may have moved, resized or changed visibility, e.g. from
+    // scroll and layout tree events. Starts the one-second deadline when the view
+    // becomes viewable and cancels it when it stops being viewable; nothing polls.
+    public void check() {
+        if (adId == null || paused) {
+            return;
+        }
+
+        if (!isViewable()) {
+            if (visibleSince != 0) {
+                visibleSince = 0;
+                view.removeCallbacks(this);
+            }
+        } else if (visibleSince == 0) {
+            visibleSince = SystemClock.uptimeMillis();
+            view.postDelayed(this, MIN_VISIBLE_TIME);
+        }
+    }
+
+    // The deadline: counts the impression if the view is still viewable
+    @Override
+    public void run() {
+        if (adId == null || paused || visibleSince == 0) {
+            return;
+        }
+
+        if (!isViewable()) {
+            visibleSince = 0;
+            return;
+        }
+        long remaining = visibleSince + MIN_VISIBLE_TIME - SystemClock.uptimeMillis();
+        if (remaining > 0) {
+            view.postDelayed(this, remaining);
+            return;
+        }
+        impressionTracker.recordImpression(adId);
+        adId = null;
+        visibleSince = 0;
+    }
+
+    private boolean isViewable() {
+        if (!view.isShown() || !view.getGlobalVisibleRect(visibleRect)) {
+            return false;
+        }
+        long totalArea = (long) view.getWidth() * view.getHeight();
+        long visibleArea = (long) visibleRect.width() * visibleRect.height();
+        return totalArea > 0 && visibleArea * 100 >= totalArea * MIN_VISIBLE_PERCENT;
+    }
+}
@@ -2,8 +2,40 @@ public class BannerAdView extends ConstraintLayout {
     private ImageView adImage;
     private TextView titleText;
     private TextView descriptionText;
-    private AdApiClient adApiClient;
+    private AdRuntime runtime;
+    private AdClickPipeline clickPipeline;
+    private AdViewabilityTracker viewabilityTracker;
+    private OnScreenChangeListener onScreenChangeListener;
     private Ad currentAd;
+    private final Rect visibleRect = new Rect();
+    private boolean attached = false; // isAttachedToWindow() is still true inside onDetachedFromWindow()
+    private boolean onScreen = false;
+    // Scrolling parents and overlays added to the window only show up as tree events
+    private final ViewTreeObserver.OnScrollChangedListener scrollListener = this::updateOnScreen;
+    private final ViewTreeObserver.OnGlobalLayoutListener layoutListener = this::updateOnScreen;
+    private Target<Drawable> prefetchTarget;
+    private long prefetchBytes; // Reserved in the runtime's prefetch total until shown or evicted
+    private long imageLoadStart;
+    // One listener for every load keeps setAd() allocation-free for metrics
+    private final RequestListener<Drawable> imageLoadListener = new RequestListener<Drawable>() {
+        @Override
+        public boolean onLoadFailed(@Nullable GlideException e, Object model,
+                                    Target<Drawable> target, boolean isFirstResource) {
+            AdRuntime.metrics().increment(AdMetrics.IMAGE_LOAD_ERRORS, 1);
+            return false;
+        }
+
+        @Override
+        public boolean onResourceReady(Drawable resource, Object model, Target<Drawable> target,
+                                       DataSource dataSource, boolean isFirstResource) {
+            AdRuntime.metrics().recordLatency(AdMetrics.IMAGE_LOAD_TIME, System.nanoTime() - imageLoadStart);
+            return false;
+        }
+    };
+
+    public interface OnScreenChangeListener {
+        void onScreenChanged(boolean onScreen);
+    }
 
     public BannerAdView(Context context) {
         super(context);
@@ -20,7 +52,9 @@ public class BannerAdView extends ConstraintLayout {
         adImage = findViewById(R.id.ad_image);
         titleText = findViewById(R.id.ad_title);
         descriptionText = findViewById(R.id.ad_description);
-        adApiClient = new AdApiClient(context);
+        runtime = AdRuntime.get(context);
+        clickPipeline = runtime.getClickPipeline();
+        viewabilityTracker = new AdViewabilityTracker(this, runtime.getImpressionTracker());
     }
 
     public void setAd(Ad ad) {
@@ -35,25 +69,165 @@ public class BannerAdView extends ConstraintLayout {
         descriptionText.setText(ad.getDescription() != null ? ad.getDescription() : "");
 
         if (ad.getImageUrl() != null) {
-            Glide.with(getContext())
-                    .load(ad.getImageUrl())
+            imageLoadStart = System.nanoTime();
+            imageRequest(ad.getImageUrl())
                     .error(R.drawable.ic_launcher_background)
+                    .listener(imageLoadListener)
                     .into(adImage);
         } else {
             adImage.setImageResource(R.drawable.ic_launcher_background);
         }
+        // The prefetched image is now shown or no longer needed; an unfinished preload
+        // clears itself when done, so only the reservation is dropped
+        prefetchTarget = null;
+        releasePrefetchBytes();
 
         setOnClickListener(v -> handleAdClick(ad));
+        viewabilityTracker.track(ad.getId());
+        if (!onScreen) {
+            viewabilityTracker.pause();
+        }
+    }
+
+    public void setOnScreenChangeListener(OnScreenChangeListener listener) {
+        this.onScreenChangeListener = listener;
+    }
+
+    // Attached, in a visible window, shown, laid out with a non-zero size, at least
+    // partly inside the screen and not covered by an interstitial
+    public boolean isOnScreen() {
+        return onScreen;
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        attached = true;
+        ViewTreeObserver observer = getViewTreeObserver();
+        observer.addOnScrollChangedListener(scrollListener);
+        observer.addOnGlobalLayoutListener(layoutListener);
+        updateOnScreen();
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        attached = false;
+        ViewTreeObserver observer = getViewTreeObserver();
+        observer.removeOnScrollChangedListener(scrollListener);
+        observer.removeOnGlobalLayoutListener(layoutListener);
+        // Keeps the pending impression, so a banner recycled back into a list resumes
+        // tracking its current ad when it is on screen again
+        viewabilityTracker.pause();
+        updateOnScreen();
+    }
+
+    @Override
+    protected void onWindowVisibilityChanged(int visibility) {
+        super.onWindowVisibilityChanged(visibility);
+        updateOnScreen();
+    }
+
+    // Called for this view's own visibility and for every ancestor's
+    @Override
+    protected void onVisibilityChanged(@NonNull View changedView, int visibility) {
+        super.onVisibilityChanged(changedView, visibility);
+        updateOnScreen();
+    }
+
+    @Override
+    protected void onSizeChanged(int width, int height, int oldWidth, int oldHeight) {
+        super.onSizeChanged(width, height, oldWidth, oldHeight);
+        updateOnScreen();
+    }
+
+    private void updateOnScreen() {
+        if (viewabilityTracker == null) {
+            // Visibility callbacks can arrive from the superclass constructor
+            return;
+        }
+        boolean visible = attached
+                && getWindowVisibility() == VISIBLE
+                && isShown()
+                && getWidth() > 0 && getHeight() > 0
+                && getGlobalVisibleRect(visibleRect)
+                && !runtime.isInterstitialShowing();
+        if (visible == onScreen) {
+            if (visible) {
+                // Scrolled or laid out again while on screen; the visible share may have changed
+                viewabilityTracker.check();
+            }
+            return;
+        }
+        onScreen = visible;
+
+        if (visible) {
+            viewabilityTracker.resume();
+        } else {
+            viewabilityTracker.pause();
+        }
+        if (onScreenChangeListener != null) {
+            onScreenChangeListener.onScreenChanged(visible);
+        }
+    }
+
+    // Decodes the image into Glide's memory cache at the size setAd() will request,
+    // so the next rotation is a cache hit. Skipped if the decoded bitmap, added to the
+    // prefetches every banner already holds, would exceed the budget.
+    public void prefetch(Ad ad, long budgetBytes) {
+        cancelPrefetch();
+        if (ad == null || ad.getImageUrl() == null) {
+            return;
+        }
+
+        int width = adImage.getWidth();
+        int height = adImage.getHeight();
+        if (width <= 0 || height <= 0) {
+            return;
+        }
+
+        long decodedBytes = (long) width * height * 4; // ARGB_8888
+        if (!runtime.reservePrefetch(decodedBytes, budgetBytes)) {
+            Log.d("BannerAdView", "Skipping prefetch, " + decodedBytes + " more bytes exceeds budget");
+            return;
+        }
+
+        prefetchBytes = decodedBytes;
+        prefetchTarget = imageRequest(ad.getImageUrl()).preload(width, height);
+    }
+
+    public void cancelPrefetch() {
+        if (prefetchTarget != null) {
+            Glide.with(getContext()).clear(prefetchTarget);
+            prefetchTarget = null;
+        }
+        releasePrefetchBytes();
+    }
+
+    private void releasePrefetchBytes() {
+        if (prefetchBytes > 0) {
+            runtime.releasePrefetch(prefetchBytes);
+            prefetchBytes = 0;
+        }
+    }
+
+    private RequestBuilder<Drawable> imageRequest(String imageUrl) {
+        RequestBuilder<Drawable> request = Glide.with(getContext()).load(imageUrl);
+
+        // Pin the decode size so prefetched and displayed requests share a cache key
+        int width = adImage.getWidth();
+        int height = adImage.getHeight();
+        if (width > 0 && height > 0) {
+            request = request.override(width, height).dontTransform();
+        }
+        return request;
     }
 
     private void handleAdClick(Ad ad) {
         if (ad.getRedirectUrl() != null) {
             try {
-                // Update local click count
-                ad.setClicks(ad.getClicks() + 1);
-                
-                // Record click with updated count
-                adApiClient.recordAdClick(ad.getId(), ad.getClicks());
+                // Journaled before the browser opens; the replayer sends it once the server is reachable
+                clickPipeline.recordClick(ad.getId());
 
                 // Open URL
                 Intent intent = new Intent(Intent.ACTION_VIEW);
@@ -61,7 +235,7 @@ public class BannerAdView extends ConstraintLayout {
                 getContext().startActivity(intent);
                 
                 // Log click for analytics
-                Log.d("BannerAdView", "Ad clicked: " + ad.getId() + ", New click count: " + ad.getClicks());
+                Log.d("BannerAdView", "Ad clicked: " + ad.getId() + ", Confirmed click count: " + ad.getClicks());
             } catch (ActivityNotFoundException e) {
                 Log.e("BannerAdView", "Could not open URL: " + ad.getRedirectUrl(), e);
             }
@@ -1,83 +1,120 @@
 public class InterstitialAdManager {
     private final Context context;
-    private final AdApiClient adApiClient;
-    private List<Ad> adsList = new ArrayList<>();
-    private boolean isLoading = false;
+    private final AdRuntime runtime;
+    private final AdInventoryStore inventoryStore;
+    private final AdClickPipeline clickPipeline;
+    private final AdFrequencyCapStore frequencyCapStore;
+    private final AdInventoryStore.OnInventoryChangedListener inventoryListener = this::updateAdsList;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Random random = new Random();
+    private List<Ad> adsList = Collections.emptyList(); // Immutable view from the inventory store
+    private AdSelector adSelector = AdSelector.EMPTY;
+    private AdTargetingIndex targetingIndex = AdTargetingIndex.EMPTY;
+    private InterstitialAdView preparedView;
+    private InterstitialAdView recycledView;
+    private boolean preparing = false;
+    private boolean isReady = false;
 
     public InterstitialAdManager(Context context) {
         this.context = context;
-        this.adApiClient = new AdApiClient(context);
+        this.runtime = AdRuntime.get(context);
+        this.inventoryStore = runtime.getInventoryStore();
+        this.clickPipeline = runtime.getClickPipeline();
+        this.frequencyCapStore = runtime.getFrequencyCapStore();
+        inventoryStore.addOnInventoryChangedListener(AdInventoryStore.TYPE_INTERSTITIAL, inventoryListener);
+
+        // Lets showAd() work before the first loadAds() completes
+        updateAdsList(inventoryStore.getAds(AdInventoryStore.TYPE_INTERSTITIAL));
     }
 
+    // Interstitials come from the same fetch as banners; this only forces a refresh
     public void loadAds(final OnAdsLoadedListener listener) {
-        if (isLoading) return;
-        isLoading = true;
-
-        adApiClient.fetchInterstitialAds(new AdCallback() {
-            @Override
-            public void onSuccess(String response) {
-                try {
-                    JSONArray jsonArray = new JSONArray(response);
-                    List<Ad> newAdsList = new ArrayList<>();
-
-                    for (int i = 0; i < jsonArray.length(); i++) {
-                        JSONObject adJson = jsonArray.getJSONObject(i);
-                        String status = adJson.optString("status", "");
-
-                        if ("active".equals(status)) {
-                            Ad ad = new Ad();
-                            ad.setId(adJson.getString("id"));
-                            ad.setTitle(adJson.optString("title", ""));
-                            ad.setDescription(adJson.optString("description", ""));
-                            ad.setImageUrl(adJson.getString("image_url"));
-                            ad.setRedirectUrl(adJson.getString("redirect_url"));
-                            ad.setStatus(status);
-                            ad.setClicks(adJson.optInt("clicks", 0));
-
-                            if (!adJson.isNull("max_clicks")) {
-                                ad.setMaxClicks(adJson.getInt("max_clicks"));
-                            }
-
-                            if (shouldShowAd(ad)) {
-                                newAdsList.add(ad);
-                            }
-                        }
-                    }
-
-                    new Handler(Looper.getMainLooper()).post(() -> {
-                        adsList = newAdsList;
-                        isLoading = false;
-                        if (listener != null) {
-                            listener.onAdsLoaded(!adsList.isEmpty());
-                        }
-                    });
-                } catch (JSONException e) {
-                    Log.e("InterstitialAdManager", "Error parsing JSON", e);
-                    handleError(listener);
-                }
+        inventoryStore.refresh((success, changed) -> {
+            if (listener != null) {
+                listener.onAdsLoaded(success && !adsList.isEmpty());
             }
+        });
+    }
+
+    private void updateAdsList(List<Ad> ads) {
+        adsList = ads;
+        adSelector = AdSelector.build(ads);
+        targetingIndex = AdTargetingIndex.build(ads);
+
+        // Never show a prepared ad that was paused or hit its click limit since
+        if (preparedView != null && !containsAd(ads, preparedView.getCurrentAd())) {
+            discardPreparedAd();
+        }
+        prepareNextAd();
+    }
+
+    public void destroy() {
+        discardPreparedAd();
+        recycledView = null;
+        clickPipeline.flush();
+        inventoryStore.removeOnInventoryChangedListener(AdInventoryStore.TYPE_INTERSTITIAL, inventoryListener);
+    }
+
+    public boolean isReady() {
+        return isReady;
+    }
+
+    // Picks the next ad and gets its view inflated and its image decoded while the
+    // main thread is idle, so showAd() only has to attach it
+    private void prepareNextAd() {
+        if (Looper.myLooper() != Looper.getMainLooper()) {
+            // Selection and view state are main-thread only, and other threads may have no looper
+            mainHandler.post(this::prepareNextAd);
+            return;
+        }
+        if (preparing || isReady || adsList.isEmpty()) {
+            return;
+        }
+        preparing = true;
 
-            @Override
-            public void onError(String error) {
-                Log.e("InterstitialAdManager", "Error loading ads: " + error);
-                handleError(listener);
+        Looper.getMainLooper().getQueue().addIdleHandler(() -> {
+            preparing = false;
+            Ad ad = selectAd(System.currentTimeMillis());
+            if (ad == null || isReady) {
+                return false;
             }
+
+            InterstitialAdView adView = recycledView != null ? recycledView : new InterstitialAdView(context);
+            recycledView = null;
+            preparedView = adView;
+            adView.prepare(ad, view -> {
+                if (view == preparedView) {
+                    isReady = true;
+                }
+            });
+            return false;
         });
     }
 
-    private void handleError(OnAdsLoadedListener listener) {
-        new Handler(Looper.getMainLooper()).post(() -> {
-            isLoading = false;
-            if (listener != null) {
-                listener.onAdsLoaded(false);
+    private Ad selectAd(long now) {
+        long[] eligible = targetingIndex.eligible(runtime.getAudience());
+        return adSelector.next(random, eligible, frequencyCapStore, now);
+    }
+
+    private static boolean containsAd(List<Ad> ads, Ad target) {
+        if (target == null) {
+            return false;
+        }
+        for (Ad ad : ads) {
+            if (ad.getId().equals(target.getId())) {
+                return true;
             }
-        });
+        }
+        return false;
     }
 
-    private boolean shouldShowAd(Ad ad) {
-        return ad != null && 
-               "active".equals(ad.getStatus()) && 
-               (ad.getMaxClicks() == null || ad.getClicks() < ad.getMaxClicks());
+    private void discardPreparedAd() {
+        if (preparedView != null) {
+            preparedView.reset();
+            recycledView = preparedView;
+            preparedView = null;
+        }
+        isReady = false;
     }
 
     public void showAd(Activity activity, OnAdDismissedListener dismissListener) {
@@ -88,23 +125,51 @@ public class InterstitialAdManager {
             return;
         }
 
-        // Select a random ad
-        Ad selectedAd = adsList.get(new Random().nextInt(adsList.size()));
+        long now = System.currentTimeMillis();
+        InterstitialAdView adView;
+        if (isReady && preparedView.getContext() == activity
+                && frequencyCapStore.canShow(preparedView.getCurrentAd(), now)
+                && AdAudienceRule.of(preparedView.getCurrentAd().getTargetAudience()).matches(runtime.getAudience())) {
+            adView = preparedView;
+            preparedView = null;
+            isReady = false;
+        } else {
+            // Not prepared yet, prepared for another activity or audience, or capped since: pick inline
+            Ad selectedAd = selectAd(now);
+            if (selectedAd == null) {
+                // Every interstitial is capped on this device or targets another audience
+                if (dismissListener != null) {
+                    dismissListener.onAdDismissed();
+                }
+                return;
+            }
+            discardPreparedAd();
+            recycledView = null;
+            adView = new InterstitialAdView(activity);
+            adView.setAd(selectedAd);
+        }
+        frequencyCapStore.recordExposure(adView.getCurrentAd(), now);
+        frequencyCapStore.save();
 
-        // Create and show the interstitial ad view
-        InterstitialAdView adView = new InterstitialAdView(activity);
-        adView.setAd(selectedAd);
         adView.setOnDismissListener(() -> {
-            // Remove the ad view from the window
+            // Remove the ad view from the window; the layout pass brings banners back
             if (adView.getParent() != null) {
                 ((ViewGroup) adView.getParent()).removeView(adView);
             }
+
+            // Keep the inflated view for the next interstitial
+            if (adView.getContext() == context) {
+                adView.reset();
+                recycledView = adView;
+            }
+            prepareNextAd();
+
             if (dismissListener != null) {
                 dismissListener.onAdDismissed();
             }
         });
 
-        // Add the ad view to the activity's root view
+        // Add the ad view to the activity's root view; attaching it hides banners from the next layout
         ViewGroup rootView = activity.findViewById(android.R.id.content);
         rootView.addView(adView, new ViewGroup.LayoutParams(
             ViewGroup.LayoutParams.MATCH_PARENT,
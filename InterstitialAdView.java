@@ -3,14 +3,22 @@ public class InterstitialAdView extends ConstraintLayout {
     private TextView titleText;
     private TextView descriptionText;
     private ImageButton closeButton;
-    private AdApiClient adApiClient;
+    private AdClickPipeline clickPipeline;
+    private AdViewabilityTracker viewabilityTracker;
     private Ad currentAd;
     private OnDismissListener onDismissListener;
+    private boolean setFullScreen = false;
+    // Layout passes, e.g. once the window is shown, drive the viewability check
+    private final ViewTreeObserver.OnGlobalLayoutListener layoutListener = () -> viewabilityTracker.check();
 
     public interface OnDismissListener {
         void onDismiss();
     }
 
+    public interface OnReadyListener {
+        void onReady(InterstitialAdView view);
+    }
+
     public InterstitialAdView(Context context) {
         super(context);
         init(context);
@@ -27,20 +35,12 @@ public class InterstitialAdView extends ConstraintLayout {
         titleText = findViewById(R.id.ad_title);
         descriptionText = findViewById(R.id.ad_description);
         closeButton = findViewById(R.id.close_button);
-        adApiClient = new AdApiClient(context);
+        clickPipeline = AdRuntime.get(context).getClickPipeline();
+        viewabilityTracker = new AdViewabilityTracker(this, AdRuntime.get(context).getImpressionTracker());
 
         closeButton.setOnClickListener(v -> dismiss());
         setOnClickListener(v -> handleAdClick());
 
-        // Set window to full screen
-        if (context instanceof Activity) {
-            Window window = ((Activity) context).getWindow();
-            window.setFlags(
-                WindowManager.LayoutParams.FLAG_FULLSCREEN,
-                WindowManager.LayoutParams.FLAG_FULLSCREEN
-            );
-        }
-
         // Set layout to match parent with full screen
         setLayoutParams(new LayoutParams(
             ViewGroup.LayoutParams.MATCH_PARENT,
@@ -69,11 +69,100 @@ public class InterstitialAdView extends ConstraintLayout {
         }
     }
 
+    // Binds the ad and decodes its image at the on-screen size before the view is attached
+    public void prepare(Ad ad, OnReadyListener listener) {
+        if (ad == null || ad.getImageUrl() == null) {
+            setAd(ad);
+            listener.onReady(this);
+            return;
+        }
+
+        this.currentAd = ad;
+        titleText.setText(ad.getTitle() != null ? ad.getTitle() : "");
+        descriptionText.setText(ad.getDescription() != null ? ad.getDescription() : "");
+
+        // A detached view has no size yet, so use the card size from the layout
+        Resources resources = getResources();
+        int width = resources.getDisplayMetrics().widthPixels
+                - 2 * resources.getDimensionPixelSize(R.dimen.interstitial_ad_margin);
+        int height = resources.getDimensionPixelSize(R.dimen.interstitial_ad_image_height);
+
+        Glide.with(getContext())
+                .load(ad.getImageUrl())
+                .override(width, height)
+                .error(R.drawable.ic_launcher_background)
+                .listener(new RequestListener<Drawable>() {
+                    @Override
+                    public boolean onLoadFailed(@Nullable GlideException e, Object model,
+                                                Target<Drawable> target, boolean isFirstResource) {
+                        Log.e("InterstitialAdView", "Failed to preload image for ad: " + ad.getId(), e);
+                        listener.onReady(InterstitialAdView.this);
+                        return false;
+                    }
+
+                    @Override
+                    public boolean onResourceReady(Drawable resource, Object model, Target<Drawable> target,
+                                                   DataSource dataSource, boolean isFirstResource) {
+                        listener.onReady(InterstitialAdView.this);
+                        return false;
+                    }
+                })
+                .into(adImage);
+    }
+
+    // Clears ad state so the inflated view can be prepared again
+    public void reset() {
+        Glide.with(getContext()).clear(adImage);
+        titleText.setText("");
+        descriptionText.setText("");
+        currentAd = null;
+        onDismissListener = null;
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        AdRuntime.get(getContext()).onInterstitialAttached();
+
+        // Set window to full screen only while shown, not while preloaded
+        Context context = getContext();
+        if (context instanceof Activity) {
+            Window window = ((Activity) context).getWindow();
+            if ((window.getAttributes().flags & WindowManager.LayoutParams.FLAG_FULLSCREEN) == 0) {
+                window.setFlags(
+                    WindowManager.LayoutParams.FLAG_FULLSCREEN,
+                    WindowManager.LayoutParams.FLAG_FULLSCREEN
+                );
+                setFullScreen = true;
+            }
+        }
+
+        // Preloaded views are attached only when shown, so count impressions from here
+        getViewTreeObserver().addOnGlobalLayoutListener(layoutListener);
+        if (currentAd != null) {
+            viewabilityTracker.track(currentAd.getId());
+        }
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        AdRuntime.get(getContext()).onInterstitialDetached();
+        getViewTreeObserver().removeOnGlobalLayoutListener(layoutListener);
+        viewabilityTracker.stop();
+
+        Context context = getContext();
+        if (setFullScreen && context instanceof Activity) {
+            ((Activity) context).getWindow().clearFlags(WindowManager.LayoutParams.FLAG_FULLSCREEN);
+        }
+        setFullScreen = false;
+    }
+
     private void handleAdClick() {
         if (currentAd != null && currentAd.getRedirectUrl() != null) {
             try {
-                // Record click
-                adApiClient.recordAdClick(currentAd.getId(), currentAd.getClicks());
+                // Journal the click before leaving the app
+                clickPipeline.recordClick(currentAd.getId());
 
                 // Open URL
                 Intent intent = new Intent(Intent.ACTION_VIEW);
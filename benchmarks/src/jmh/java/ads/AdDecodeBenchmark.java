@@ -0,0 +1,42 @@
+package ads;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class AdDecodeBenchmark {
+    @Param({"10", "100", "1000", "10000", "100000"})
+    public int inventorySize;
+
+    private String responseBody;
+
+    @Setup
+    public void setUp() {
+        responseBody = BenchmarkAds.toJson(BenchmarkAds.generate(inventorySize, 42));
+    }
+
+    // Full sync and interstitial path: paused and capped rows dropped while reading
+    @Benchmark
+    public List<Ad> decodeEligible() throws IOException {
+        return AdJsonDecoder.decode(new StringReader(responseBody), true);
+    }
+
+    // Delta sync path: every row is kept so paused ads can be removed locally
+    @Benchmark
+    public List<Ad> decodeAll() throws IOException {
+        return AdJsonDecoder.decode(new StringReader(responseBody), false);
+    }
+}
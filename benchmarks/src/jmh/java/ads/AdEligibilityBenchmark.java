@@ -0,0 +1,40 @@
+package ads;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class AdEligibilityBenchmark {
+    @Param({"10", "100", "1000", "10000", "100000"})
+    public int inventorySize;
+
+    private List<Ad> ads;
+
+    @Setup
+    public void setUp() {
+        ads = BenchmarkAds.generate(inventorySize, 42);
+    }
+
+    // The shouldBeActive / shouldShowAd check applied to every ad on each merge
+    @Benchmark
+    public int filterEligible() {
+        int eligible = 0;
+        for (int i = 0; i < ads.size(); i++) {
+            if (AdJsonDecoder.isEligible(ads.get(i))) {
+                eligible++;
+            }
+        }
+        return eligible;
+    }
+}
@@ -0,0 +1,58 @@
+package ads;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class AdPacingBenchmark {
+    @Param({"10", "100", "1000", "10000", "100000"})
+    public int inventorySize;
+
+    private List<Ad> ads;
+    private AdPacer pacer;
+    private Random random;
+    private long now;
+
+    @Setup
+    public void setUp() {
+        ads = new ArrayList<>();
+        for (Ad ad : BenchmarkAds.generate(inventorySize, 42)) {
+            if (AdJsonDecoder.isEligible(ad)) {
+                ads.add(ad);
+            }
+        }
+        now = 1000000;
+        pacer = AdPacer.build(ads, null, now, System.currentTimeMillis());
+        random = new Random(7);
+    }
+
+    // Runs once per inventory change in AdRotationManager.updateAdsList
+    @Benchmark
+    public AdPacer buildPacer() {
+        return AdPacer.build(ads, pacer, now, System.currentTimeMillis());
+    }
+
+    // Runs on every rotation tick: pick an ad, then charge it once it is shown; the
+    // clock advances by its display time
+    @Benchmark
+    public Ad selectPaced() {
+        Ad ad = pacer.peek(random, null, (candidate, time) -> true, now);
+        if (ad != null) {
+            now += pacer.commit(ad, null, now);
+        }
+        return ad;
+    }
+}
@@ -0,0 +1,80 @@
+package ads;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class AdSelectionBenchmark {
+    @Param({"10", "100", "1000", "10000", "100000"})
+    public int inventorySize;
+
+    private List<Ad> ads;
+    private AdSelector selector;
+    private Random random;
+
+    @Setup
+    public void setUp() {
+        ads = new ArrayList<>();
+        for (Ad ad : BenchmarkAds.generate(inventorySize, 42)) {
+            if (AdJsonDecoder.isEligible(ad)) {
+                ads.add(ad);
+            }
+        }
+        selector = AdSelector.build(ads);
+        random = new Random(7);
+    }
+
+    // Runs once per inventory change in AdRotationManager.updateAdsList
+    @Benchmark
+    public AdSelector buildSelector() {
+        return AdSelector.build(ads);
+    }
+
+    // Runs on every rotation tick
+    @Benchmark
+    public Ad selectNext() {
+        return selector.next(random);
+    }
+
+    // Baseline: the per-tick weighted scan selectNextAd used before the alias table
+    @Benchmark
+    public Ad selectNextLinearScan() {
+        double[] weights = new double[ads.size()];
+        double totalWeight = 0;
+        for (int i = 0; i < weights.length; i++) {
+            weights[i] = AdSelector.weightOf(ads.get(i));
+            totalWeight += weights[i];
+        }
+
+        double randomValue = random.nextDouble() * totalWeight;
+        double currentSum = 0;
+        for (int i = 0; i < weights.length; i++) {
+            currentSum += weights[i];
+            if (randomValue <= currentSum) {
+                return ads.get(i);
+            }
+        }
+        return ads.get(0);
+    }
+
+    @Benchmark
+    public void calculateWeights(Blackhole blackhole) {
+        for (int i = 0; i < ads.size(); i++) {
+            blackhole.consume(AdSelector.weightOf(ads.get(i)));
+        }
+    }
+}
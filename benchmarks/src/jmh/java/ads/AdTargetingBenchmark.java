@@ -0,0 +1,72 @@
+package ads;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class AdTargetingBenchmark {
+    @Param({"10", "100", "1000", "10000", "100000"})
+    public int inventorySize;
+
+    private List<Ad> ads;
+    private AdTargetingIndex index;
+    private AdSelector selector;
+    private Map<String, String> audience;
+    private Random random;
+
+    @Setup
+    public void setUp() {
+        ads = BenchmarkAds.generate(inventorySize, 42);
+        index = AdTargetingIndex.build(ads);
+        selector = AdSelector.build(ads);
+        Map<String, String> attributes = new HashMap<>();
+        attributes.put("country", "US");
+        attributes.put("age", "25-34");
+        audience = AdAudienceRule.attributes(attributes);
+        random = new Random(7);
+    }
+
+    // Runs once per inventory change next to AdSelector.build
+    @Benchmark
+    public AdTargetingIndex buildIndex() {
+        return AdTargetingIndex.build(ads);
+    }
+
+    // Runs whenever the audience changes; every other draw reuses the result
+    @Benchmark
+    public long[] computeEligible() {
+        return index.computeEligible(audience);
+    }
+
+    // Runs on every rotation tick
+    @Benchmark
+    public Ad selectEligible() {
+        return selector.next(random, index.eligible(audience), (ad, now) -> true, 0);
+    }
+
+    // Baseline: matching every ad's compiled rule one by one
+    @Benchmark
+    public int matchEachRule() {
+        int eligible = 0;
+        for (int i = 0; i < ads.size(); i++) {
+            if (AdAudienceRule.of(ads.get(i).getTargetAudience()).matches(audience)) {
+                eligible++;
+            }
+        }
+        return eligible;
+    }
+}
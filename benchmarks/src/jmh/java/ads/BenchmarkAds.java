@@ -0,0 +1,79 @@
+package ads;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.UUID;
+
+// Deterministic synthetic inventories shared by the benchmarks
+final class BenchmarkAds {
+    // Mix of target_audience rules; most ads are untargeted
+    private static final String[] AUDIENCES = {
+            "All", "All", "All", "All", "All", "All",
+            "country=us", "country=us|ca|gb", "country=de;age=18-24|25-34", "age=35-44|45-54"
+    };
+
+    private BenchmarkAds() {
+    }
+
+    static List<Ad> generate(int count, long seed) {
+        Random random = new Random(seed);
+        List<Ad> ads = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int maxClicks = 100 + random.nextInt(900);
+            Ad ad = Ad.builder()
+                    .id(new UUID(random.nextLong(), random.nextLong()).toString())
+                    .type("banner")
+                    .title("Campaign " + i)
+                    .description("Limited time offer number " + i + " for benchmark inventory")
+                    .imageUrl("https://example.com/ads/" + i + ".jpg")
+                    .redirectUrl("https://example.com/landing/" + i)
+                    .status(random.nextInt(10) == 0 ? "paused" : "active") // ~10% paused
+                    .maxClicks(random.nextInt(5) == 0 ? Ad.NO_LIMIT : maxClicks) // ~20% uncapped
+                    .clicks(random.nextInt(maxClicks + maxClicks / 10)) // some already over the cap
+                    .targetAudience(AUDIENCES[random.nextInt(AUDIENCES.length)])
+                    .budget(50 + random.nextInt(451))
+                    .maxImpressions(random.nextInt(3) == 0 ? Ad.NO_LIMIT : maxClicks * 100)
+                    .impressions(random.nextInt(maxClicks * 100))
+                    .startDate("2024-04-01T00:00:00+00:00")
+                    .updatedAt("2024-04-21T10:00:00." + String.format("%06d", i % 1000000) + "+00:00")
+                    .build();
+            ads.add(ad);
+        }
+        return ads;
+    }
+
+    // Mirrors the PostgREST select=* row shape, including columns the decoder skips
+    static String toJson(List<Ad> ads) {
+        StringBuilder json = new StringBuilder(ads.size() * 420);
+        json.append('[');
+        for (int i = 0; i < ads.size(); i++) {
+            Ad ad = ads.get(i);
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"id\":\"").append(ad.getId()).append('"')
+                .append(",\"type\":\"banner\"")
+                .append(",\"title\":\"").append(ad.getTitle()).append('"')
+                .append(",\"description\":\"").append(ad.getDescription()).append('"')
+                .append(",\"image_url\":\"").append(ad.getImageUrl()).append('"')
+                .append(",\"redirect_url\":\"").append(ad.getRedirectUrl()).append('"')
+                .append(",\"start_date\":\"").append(ad.getStartDate()).append('"')
+                .append(",\"end_date\":null")
+                .append(",\"status\":\"").append(ad.getStatus()).append('"')
+                .append(",\"pause_reason\":null")
+                .append(",\"created_at\":\"2024-04-01T00:00:00+00:00\"")
+                .append(",\"clicks\":").append(ad.getClicks())
+                .append(",\"max_clicks\":").append(ad.hasMaxClicks() ? String.valueOf(ad.getMaxClicks()) : "null")
+                .append(",\"target_audience\":\"").append(ad.getTargetAudience()).append('"')
+                .append(",\"impressions\":").append(ad.getImpressions())
+                .append(",\"max_impressions\":").append(ad.hasMaxImpressions() ? String.valueOf(ad.getMaxImpressions()) : "null")
+                .append(",\"budget\":").append(String.format(Locale.ROOT, "%.2f", ad.getBudget()))
+                .append(",\"frequency_cap\":3")
+                .append(",\"updated_at\":\"").append(ad.getUpdatedAt()).append("\"}");
+        }
+        json.append(']');
+        return json.toString();
+    }
+}
@@ -0,0 +1,73 @@
+package android.util;
+
+// JVM stand-in for the Android class, delegating to Gson's reader (the code it was derived from)
+public final class JsonReader implements java.io.Closeable {
+    private static final JsonToken[] TOKENS = JsonToken.values();
+
+    private final com.google.gson.stream.JsonReader delegate;
+
+    public JsonReader(java.io.Reader in) {
+        this.delegate = new com.google.gson.stream.JsonReader(in);
+    }
+
+    public void beginArray() throws java.io.IOException {
+        delegate.beginArray();
+    }
+
+    public void endArray() throws java.io.IOException {
+        delegate.endArray();
+    }
+
+    public void beginObject() throws java.io.IOException {
+        delegate.beginObject();
+    }
+
+    public void endObject() throws java.io.IOException {
+        delegate.endObject();
+    }
+
+    public boolean hasNext() throws java.io.IOException {
+        return delegate.hasNext();
+    }
+
+    public JsonToken peek() throws java.io.IOException {
+        return TOKENS[delegate.peek().ordinal()];
+    }
+
+    public String nextName() throws java.io.IOException {
+        return delegate.nextName();
+    }
+
+    public String nextString() throws java.io.IOException {
+        return delegate.nextString();
+    }
+
+    public boolean nextBoolean() throws java.io.IOException {
+        return delegate.nextBoolean();
+    }
+
+    public void nextNull() throws java.io.IOException {
+        delegate.nextNull();
+    }
+
+    public double nextDouble() throws java.io.IOException {
+        return delegate.nextDouble();
+    }
+
+    public long nextLong() throws java.io.IOException {
+        return delegate.nextLong();
+    }
+
+    public int nextInt() throws java.io.IOException {
+        return delegate.nextInt();
+    }
+
+    public void skipValue() throws java.io.IOException {
+        delegate.skipValue();
+    }
+
+    @Override
+    public void close() throws java.io.IOException {
+        delegate.close();
+    }
+}
@@ -31,46 +31,19 @@ export async function fetchActiveInterstitialAds() {
   return data as Ad[];
 }
 
+// One atomic RPC increments the click, pauses the ad at max_clicks and returns the
+// new state. No row comes back when the ad was not active.
 export async function recordAdClick(adId: string) {
-  const { data: ad, error: fetchError } = await supabase
-    .from('ads')
-    .select('clicks, max_clicks, status, title, image_url')
-    .eq('id', adId)
-    .single();
-
-  if (fetchError) {
-    console.error('Error fetching ad:', fetchError);
-    throw fetchError;
-  }
-
-  if (ad.status !== 'active') {
-    return;
-  }
-
-  // Use the RPC function to increment clicks
-  const { error } = await supabase
+  const { data, error } = await supabase
     .rpc('increment_ad_clicks', { ad_id: adId });
-  
+
   if (error) {
     console.error('Error recording click:', error);
     throw error;
   }
 
-  // Check if limits are reached and pause if necessary
-  if (ad.max_clicks && ad.clicks + 1 >= ad.max_clicks) {
-    const { error: updateError } = await supabase
-      .from('ads')
-      .update({ 
-        status: 'paused',
-        pause_reason: 'limits'
-      })
-      .eq('id', adId);
-
-    if (updateError) {
-      console.error('Error updating ad status:', updateError);
-      throw updateError;
-    }
-  }
+  const rows = data as Pick<Ad, 'id' | 'clicks' | 'max_clicks' | 'status'>[] | null;
+  return rows && rows.length > 0 ? rows[0] : null;
 }
 
 export async function checkAndUpdateAdStatus(ad: Ad) {
@@ -0,0 +1,27 @@
+-- Apply a batch of click deltas in one round trip and return the new ad state
+CREATE OR REPLACE FUNCTION increment_ad_clicks_batch(deltas jsonb)
+RETURNS TABLE (id uuid, clicks integer, status text)
+LANGUAGE sql
+SECURITY DEFINER
+AS $$
+    UPDATE ads AS a
+    SET 
+        clicks = COALESCE(a.clicks, 0) + d.delta,
+        -- Pause ad if max_clicks is set and reached
+        status = CASE 
+            WHEN a.max_clicks IS NOT NULL AND COALESCE(a.clicks, 0) + d.delta >= a.max_clicks THEN 'paused'
+            ELSE a.status
+        END
+    FROM (
+        SELECT ad_id, SUM(delta)::integer AS delta
+        FROM jsonb_to_recordset(deltas) AS x(ad_id uuid, delta integer)
+        WHERE delta > 0
+        GROUP BY ad_id
+    ) AS d
+    WHERE a.id = d.ad_id
+      AND a.status = 'active'
+    RETURNING a.id, a.clicks, a.status;
+$$;
+
+-- Grant access to the anonymous role
+GRANT EXECUTE ON FUNCTION increment_ad_clicks_batch(jsonb) TO anon;
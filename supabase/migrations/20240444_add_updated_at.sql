@@ -0,0 +1,23 @@
+-- Track when each ad last changed so clients can sync only what changed
+ALTER TABLE public.ads
+ADD COLUMN IF NOT EXISTS updated_at timestamp with time zone default now() not null;
+
+-- Keep updated_at current on every update (including click increments)
+CREATE OR REPLACE FUNCTION set_ads_updated_at()
+RETURNS TRIGGER
+LANGUAGE plpgsql
+AS $$
+BEGIN
+  NEW.updated_at = now();
+  RETURN NEW;
+END;
+$$;
+
+DROP TRIGGER IF EXISTS ads_updated_at_trigger ON ads;
+CREATE TRIGGER ads_updated_at_trigger
+  BEFORE UPDATE ON ads
+  FOR EACH ROW
+  EXECUTE FUNCTION set_ads_updated_at();
+
+-- Serve "type = ? AND updated_at > ?" delta queries from an index
+CREATE INDEX IF NOT EXISTS ads_type_updated_at_idx ON public.ads (type, updated_at);
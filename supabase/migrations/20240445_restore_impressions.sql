@@ -0,0 +1,33 @@
+-- Restore impression columns (dropped in 20240433_remove_impressions) now that
+-- the Android SDK reports viewable impressions
+ALTER TABLE public.ads
+ADD COLUMN IF NOT EXISTS impressions integer default 0 not null,
+ADD COLUMN IF NOT EXISTS max_impressions integer;
+
+-- Apply a batch of impression deltas in one round trip and return the new ad state
+CREATE OR REPLACE FUNCTION increment_ad_impressions_batch(deltas jsonb)
+RETURNS TABLE (id uuid, impressions integer, status text)
+LANGUAGE sql
+SECURITY DEFINER
+AS $$
+    UPDATE ads AS a
+    SET 
+        impressions = COALESCE(a.impressions, 0) + d.delta,
+        -- Pause ad if max_impressions is set and reached
+        status = CASE 
+            WHEN a.max_impressions IS NOT NULL AND COALESCE(a.impressions, 0) + d.delta >= a.max_impressions THEN 'paused'
+            ELSE a.status
+        END
+    FROM (
+        SELECT ad_id, SUM(delta)::integer AS delta
+        FROM jsonb_to_recordset(deltas) AS x(ad_id uuid, delta integer)
+        WHERE delta > 0
+        GROUP BY ad_id
+    ) AS d
+    WHERE a.id = d.ad_id
+      AND a.status = 'active'
+    RETURNING a.id, a.impressions, a.status;
+$$;
+
+-- Grant access to the anonymous role
+GRANT EXECUTE ON FUNCTION increment_ad_impressions_batch(jsonb) TO anon;
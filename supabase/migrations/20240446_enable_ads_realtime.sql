@@ -0,0 +1,11 @@
+-- Stream row changes on ads to clients subscribed over Supabase Realtime
+DO $$
+BEGIN
+  IF NOT EXISTS (
+    SELECT 1 FROM pg_publication_tables
+    WHERE pubname = 'supabase_realtime' AND schemaname = 'public' AND tablename = 'ads'
+  ) THEN
+    ALTER PUBLICATION supabase_realtime ADD TABLE public.ads;
+  END IF;
+END;
+$$;
@@ -0,0 +1,67 @@
+-- Replace the read-then-update click function with one atomic UPDATE ... RETURNING.
+-- The return type changes, so the old void function has to be dropped first.
+DROP FUNCTION IF EXISTS increment_ad_clicks(uuid);
+
+CREATE FUNCTION increment_ad_clicks(ad_id uuid)
+RETURNS TABLE (id uuid, clicks integer, max_clicks integer, status text)
+LANGUAGE sql
+SECURITY DEFINER
+AS $$
+    UPDATE ads AS a
+    SET 
+        clicks = COALESCE(a.clicks, 0) + 1,
+        -- Pause ad if max_clicks is set and reached
+        status = CASE 
+            WHEN a.max_clicks IS NOT NULL AND COALESCE(a.clicks, 0) + 1 >= a.max_clicks THEN 'paused'
+            ELSE a.status
+        END,
+        pause_reason = CASE 
+            WHEN a.max_clicks IS NOT NULL AND COALESCE(a.clicks, 0) + 1 >= a.max_clicks THEN 'limits'
+            ELSE a.pause_reason
+        END
+    WHERE a.id = increment_ad_clicks.ad_id
+      AND a.status = 'active'
+    RETURNING a.id, a.clicks, a.max_clicks, a.status;
+$$;
+
+-- Batch variant: also records why an ad was paused, and reports the current state
+-- of ads that were not updated (already paused or capped) so clients drop them now
+CREATE OR REPLACE FUNCTION increment_ad_clicks_batch(deltas jsonb)
+RETURNS TABLE (id uuid, clicks integer, status text)
+LANGUAGE sql
+SECURITY DEFINER
+AS $$
+    WITH d AS (
+        SELECT ad_id, SUM(delta)::integer AS delta
+        FROM jsonb_to_recordset(deltas) AS x(ad_id uuid, delta integer)
+        WHERE delta > 0
+        GROUP BY ad_id
+    ), updated AS (
+        UPDATE ads AS a
+        SET 
+            clicks = COALESCE(a.clicks, 0) + d.delta,
+            -- Pause ad if max_clicks is set and reached
+            status = CASE 
+                WHEN a.max_clicks IS NOT NULL AND COALESCE(a.clicks, 0) + d.delta >= a.max_clicks THEN 'paused'
+                ELSE a.status
+            END,
+            pause_reason = CASE 
+                WHEN a.max_clicks IS NOT NULL AND COALESCE(a.clicks, 0) + d.delta >= a.max_clicks THEN 'limits'
+                ELSE a.pause_reason
+            END
+        FROM d
+        WHERE a.id = d.ad_id
+          AND a.status = 'active'
+        RETURNING a.id, a.clicks, a.status
+    )
+    SELECT updated.id, updated.clicks, updated.status FROM updated
+    UNION ALL
+    SELECT a.id, a.clicks, a.status
+    FROM ads AS a
+    JOIN d ON d.ad_id = a.id
+    WHERE NOT EXISTS (SELECT 1 FROM updated WHERE updated.id = a.id);
+$$;
+
+-- Grant access to the anonymous role
+GRANT EXECUTE ON FUNCTION increment_ad_clicks(uuid) TO anon;
+GRANT EXECUTE ON FUNCTION increment_ad_clicks_batch(jsonb) TO anon;
@@ -0,0 +1,57 @@
+-- Serve the full-sync query "active ads of these types" from a small index
+CREATE INDEX IF NOT EXISTS ads_active_type_idx ON public.ads (type) WHERE status = 'active';
+
+-- Return only the columns the Android Ad model reads. A full sync (no cursor) returns
+-- eligible ads only: active, with click and impression headroom. A delta sync returns
+-- every row changed after the cursor, so clients can drop ads that left eligibility;
+-- active rows without headroom are reported with status 'capped'.
+CREATE OR REPLACE FUNCTION eligible_ads(types text[], updated_after timestamptz DEFAULT NULL)
+RETURNS TABLE (
+    id uuid,
+    type text,
+    title text,
+    description text,
+    image_url text,
+    redirect_url text,
+    status text,
+    clicks integer,
+    max_clicks integer,
+    frequency_cap integer,
+    updated_at timestamptz
+)
+LANGUAGE plpgsql
+STABLE
+SECURITY DEFINER
+AS $$
+BEGIN
+    IF updated_after IS NULL THEN
+        RETURN QUERY
+        SELECT a.id, a.type, a.title, a.description, a.image_url, a.redirect_url,
+               a.status, a.clicks, a.max_clicks, a.frequency_cap, a.updated_at
+        FROM ads AS a
+        WHERE a.type = ANY(eligible_ads.types)
+          AND a.status = 'active'
+          AND (a.max_clicks IS NULL OR a.clicks < a.max_clicks)
+          AND (a.max_impressions IS NULL OR a.impressions < a.max_impressions)
+        ORDER BY a.updated_at;
+    ELSE
+        RETURN QUERY
+        SELECT a.id, a.type, a.title, a.description, a.image_url, a.redirect_url,
+               CASE
+                   WHEN a.status = 'active'
+                        AND ((a.max_clicks IS NOT NULL AND a.clicks >= a.max_clicks)
+                             OR (a.max_impressions IS NOT NULL AND a.impressions >= a.max_impressions))
+                   THEN 'capped'
+                   ELSE a.status
+               END,
+               a.clicks, a.max_clicks, a.frequency_cap, a.updated_at
+        FROM ads AS a
+        WHERE a.type = ANY(eligible_ads.types)
+          AND a.updated_at > eligible_ads.updated_after
+        ORDER BY a.updated_at;
+    END IF;
+END;
+$$;
+
+-- Grant access to the anonymous role
+GRANT EXECUTE ON FUNCTION eligible_ads(text[], timestamptz) TO anon;
@@ -0,0 +1,53 @@
+-- Full syncs are fetched in parallel pages. Offset pages over a live table skip a
+-- row whenever an earlier one stops being eligible mid-sync, and PostgREST applies
+-- limit/offset outside the function, so every page would re-run and sort the whole
+-- result. Clients instead split the id space into fixed ranges fetched in parallel
+-- and page each one by the last id seen; the limit runs inside the function, so a
+-- page is one index range scan.
+--
+-- The (type) index from eligible_ads returns rows in no useful order for an id
+-- range, and the primary key would walk paused rows too, so active ads get their
+-- own id index.
+CREATE INDEX IF NOT EXISTS ads_active_id_idx ON public.ads (id) WHERE status = 'active';
+
+CREATE OR REPLACE FUNCTION eligible_ads_page(
+    types text[],
+    page_size integer,
+    after_id uuid DEFAULT NULL, -- Exclusive; NULL starts at the lowest id
+    upto_id uuid DEFAULT NULL   -- Inclusive; NULL runs to the highest id
+)
+RETURNS TABLE (
+    id uuid,
+    type text,
+    title text,
+    description text,
+    image_url text,
+    redirect_url text,
+    status text,
+    clicks integer,
+    max_clicks integer,
+    frequency_cap integer,
+    updated_at timestamptz
+)
+LANGUAGE plpgsql
+STABLE
+SECURITY DEFINER
+AS $$
+BEGIN
+    RETURN QUERY
+    SELECT a.id, a.type, a.title, a.description, a.image_url, a.redirect_url,
+           a.status, a.clicks, a.max_clicks, a.frequency_cap, a.updated_at
+    FROM ads AS a
+    WHERE a.type = ANY(eligible_ads_page.types)
+      AND (eligible_ads_page.after_id IS NULL OR a.id > eligible_ads_page.after_id)
+      AND (eligible_ads_page.upto_id IS NULL OR a.id <= eligible_ads_page.upto_id)
+      AND a.status = 'active'
+      AND (a.max_clicks IS NULL OR a.clicks < a.max_clicks)
+      AND (a.max_impressions IS NULL OR a.impressions < a.max_impressions)
+    ORDER BY a.id
+    LIMIT LEAST(GREATEST(eligible_ads_page.page_size, 1), 1000);
+END;
+$$;
+
+-- Grant access to the anonymous role
+GRANT EXECUTE ON FUNCTION eligible_ads_page(text[], integer, uuid, uuid) TO anon;
@@ -0,0 +1,100 @@
+-- Clients pace delivery from each campaign's budget, its remaining click and
+-- impression headroom and its start date, so the sync functions return them too.
+DROP FUNCTION IF EXISTS eligible_ads(text[], timestamptz);
+DROP FUNCTION IF EXISTS eligible_ads_page(text[], integer, uuid, uuid);
+
+CREATE FUNCTION eligible_ads(types text[], updated_after timestamptz)
+RETURNS TABLE (
+    id uuid,
+    type text,
+    title text,
+    description text,
+    image_url text,
+    redirect_url text,
+    status text,
+    clicks integer,
+    max_clicks integer,
+    frequency_cap integer,
+    target_audience text,
+    budget numeric,
+    impressions integer,
+    max_impressions integer,
+    start_date timestamptz,
+    updated_at timestamptz
+)
+LANGUAGE plpgsql
+STABLE
+SECURITY DEFINER
+AS $$
+BEGIN
+    -- Full syncs page through eligible_ads_page; this only serves deltas
+    IF updated_after IS NULL THEN
+        RAISE EXCEPTION 'eligible_ads requires updated_after' USING ERRCODE = '22004';
+    END IF;
+
+    RETURN QUERY
+    SELECT a.id, a.type, a.title, a.description, a.image_url, a.redirect_url,
+           CASE
+               WHEN a.status = 'active'
+                    AND ((a.max_clicks IS NOT NULL AND a.clicks >= a.max_clicks)
+                         OR (a.max_impressions IS NOT NULL AND a.impressions >= a.max_impressions))
+               THEN 'capped'
+               ELSE a.status
+           END,
+           a.clicks, a.max_clicks, a.frequency_cap, a.target_audience,
+           a.budget, a.impressions, a.max_impressions, a.start_date, a.updated_at
+    FROM ads AS a
+    WHERE a.type = ANY(eligible_ads.types)
+      AND a.updated_at > eligible_ads.updated_after
+    ORDER BY a.updated_at;
+END;
+$$;
+
+CREATE FUNCTION eligible_ads_page(
+    types text[],
+    page_size integer,
+    after_id uuid DEFAULT NULL, -- Exclusive; NULL starts at the lowest id
+    upto_id uuid DEFAULT NULL   -- Inclusive; NULL runs to the highest id
+)
+RETURNS TABLE (
+    id uuid,
+    type text,
+    title text,
+    description text,
+    image_url text,
+    redirect_url text,
+    status text,
+    clicks integer,
+    max_clicks integer,
+    frequency_cap integer,
+    target_audience text,
+    budget numeric,
+    impressions integer,
+    max_impressions integer,
+    start_date timestamptz,
+    updated_at timestamptz
+)
+LANGUAGE plpgsql
+STABLE
+SECURITY DEFINER
+AS $$
+BEGIN
+    RETURN QUERY
+    SELECT a.id, a.type, a.title, a.description, a.image_url, a.redirect_url,
+           a.status, a.clicks, a.max_clicks, a.frequency_cap, a.target_audience,
+           a.budget, a.impressions, a.max_impressions, a.start_date, a.updated_at
+    FROM ads AS a
+    WHERE a.type = ANY(eligible_ads_page.types)
+      AND (eligible_ads_page.after_id IS NULL OR a.id > eligible_ads_page.after_id)
+      AND (eligible_ads_page.upto_id IS NULL OR a.id <= eligible_ads_page.upto_id)
+      AND a.status = 'active'
+      AND (a.max_clicks IS NULL OR a.clicks < a.max_clicks)
+      AND (a.max_impressions IS NULL OR a.impressions < a.max_impressions)
+    ORDER BY a.id
+    LIMIT LEAST(GREATEST(eligible_ads_page.page_size, 1), 1000);
+END;
+$$;
+
+-- Dropping the functions removed their grants
+GRANT EXECUTE ON FUNCTION eligible_ads(text[], timestamptz) TO anon;
+GRANT EXECUTE ON FUNCTION eligible_ads_page(text[], integer, uuid, uuid) TO anon;
@@ -0,0 +1,129 @@
+-- Clicks and impressions are now written to an on-device journal and replayed
+-- until the server acknowledges them, so the same event can arrive more than once.
+-- Clients replay each journal run strictly in order, so one high-water mark per run
+-- (the last segment and position applied) makes replays no-ops without a row per
+-- event. A run is one process lifetime; marks idle for longer than clients keep
+-- events (7 days) are pruned as batches arrive.
+CREATE TABLE IF NOT EXISTS public.ad_event_runs (
+  run_id TEXT PRIMARY KEY,
+  segment BIGINT NOT NULL,
+  position INTEGER NOT NULL,
+  updated_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT NOW()
+);
+
+CREATE INDEX IF NOT EXISTS ad_event_runs_updated_at_idx ON public.ad_event_runs (updated_at);
+
+-- Only record_ad_events writes marks; no policies, so clients cannot read them
+ALTER TABLE public.ad_event_runs ENABLE ROW LEVEL SECURITY;
+
+-- Events are {run_id, segment, position, ad_id, type, count, occurred_at} with
+-- occurred_at in epoch milliseconds. Applies every event past its run's mark, moves
+-- the marks and returns the resulting state of every ad in the batch, including ads
+-- whose events were duplicates or that are no longer active.
+--
+-- Anyone holding the anon key can call this, so a batch is capped at the client's
+-- 100 events, run ids must look like the client's (a 64-bit id in hex) before they
+-- get a mark, and every event counts exactly once whatever count it claims.
+CREATE OR REPLACE FUNCTION record_ad_events(events jsonb)
+RETURNS TABLE (id uuid, clicks integer, impressions integer, status text)
+LANGUAGE plpgsql
+SECURITY DEFINER
+AS $$
+#variable_conflict use_column
+BEGIN
+    IF jsonb_typeof(events) IS DISTINCT FROM 'array' THEN
+        RAISE EXCEPTION 'events must be an array' USING ERRCODE = '22023';
+    ELSIF jsonb_array_length(events) > 100 THEN
+        RAISE EXCEPTION 'At most 100 events per batch' USING ERRCODE = '22023';
+    END IF;
+
+    -- Lock the batch's marks so a resent batch racing its original applies once
+    INSERT INTO ad_event_runs (run_id, segment, position)
+    SELECT DISTINCT x.run_id, -1, -1
+    FROM jsonb_to_recordset(events) AS x(run_id text)
+    WHERE x.run_id ~ '^[0-9a-f]{1,16}$'
+    ON CONFLICT (run_id) DO NOTHING;
+
+    PERFORM 1
+    FROM ad_event_runs AS r
+    WHERE r.run_id IN (SELECT x.run_id FROM jsonb_to_recordset(events) AS x(run_id text))
+    ORDER BY r.run_id
+    FOR UPDATE;
+
+    RETURN QUERY
+    WITH x AS (
+        SELECT *
+        FROM jsonb_to_recordset(events) AS x(run_id text, segment bigint, position integer, ad_id uuid,
+                                             type text, count integer, occurred_at bigint)
+        WHERE x.run_id ~ '^[0-9a-f]{1,16}$'
+          AND x.segment IS NOT NULL
+          AND x.position IS NOT NULL
+    ), e AS (
+        -- Every sub-statement sees the marks as they were before this batch
+        SELECT x.ad_id, x.type
+        FROM x
+        JOIN ad_event_runs AS r ON r.run_id = x.run_id
+        WHERE (x.segment, x.position) > (r.segment, r.position)
+          AND x.type IN ('click', 'impression')
+          AND x.count = 1
+    ), marks AS (
+        UPDATE ad_event_runs AS r
+        SET segment = m.segment, position = m.position, updated_at = NOW()
+        FROM (
+            SELECT DISTINCT ON (x.run_id) x.run_id, x.segment, x.position
+            FROM x
+            ORDER BY x.run_id, x.segment DESC, x.position DESC
+        ) AS m
+        WHERE r.run_id = m.run_id
+          AND (m.segment, m.position) > (r.segment, r.position)
+    ), d AS (
+        SELECT e.ad_id,
+               COUNT(*) FILTER (WHERE e.type = 'click') AS clicks,
+               COUNT(*) FILTER (WHERE e.type = 'impression') AS impressions
+        FROM e
+        GROUP BY e.ad_id
+    ), updated AS (
+        -- Totals are summed as bigint and saturate rather than overflow the column
+        UPDATE ads AS a
+        SET
+            clicks = LEAST(COALESCE(a.clicks, 0) + d.clicks, 2147483647),
+            impressions = LEAST(COALESCE(a.impressions, 0) + d.impressions, 2147483647),
+            -- Pause ad if either limit is set and reached
+            status = CASE
+                WHEN (a.max_clicks IS NOT NULL AND COALESCE(a.clicks, 0) + d.clicks >= a.max_clicks)
+                  OR (a.max_impressions IS NOT NULL AND COALESCE(a.impressions, 0) + d.impressions >= a.max_impressions)
+                THEN 'paused'
+                ELSE a.status
+            END,
+            pause_reason = CASE
+                WHEN (a.max_clicks IS NOT NULL AND COALESCE(a.clicks, 0) + d.clicks >= a.max_clicks)
+                  OR (a.max_impressions IS NOT NULL AND COALESCE(a.impressions, 0) + d.impressions >= a.max_impressions)
+                THEN 'limits'
+                ELSE a.pause_reason
+            END
+        FROM d
+        WHERE a.id = d.ad_id
+          AND a.status = 'active'
+        RETURNING a.id, a.clicks, a.impressions, a.status
+    )
+    SELECT updated.id, updated.clicks, updated.impressions, updated.status FROM updated
+    UNION ALL
+    SELECT a.id, a.clicks, a.impressions, a.status
+    FROM ads AS a
+    WHERE a.id IN (SELECT x.ad_id FROM x)
+      AND NOT EXISTS (SELECT 1 FROM updated WHERE updated.id = a.id);
+
+    -- Clients drop events older than 7 days, so an older mark can never match a replay
+    DELETE FROM ad_event_runs AS r WHERE r.updated_at < NOW() - INTERVAL '8 days';
+END;
+$$;
+
+-- Grant access to the anonymous role
+GRANT EXECUTE ON FUNCTION record_ad_events(jsonb) TO anon;
+
+-- Clicks now only arrive through record_ad_events. The batch RPC applied any
+-- positive delta from the anonymous role, so it could pause any ad; drop it.
+DROP FUNCTION IF EXISTS increment_ad_clicks_batch(jsonb);
+
+-- The same goes for impressions and their batch RPC
+DROP FUNCTION IF EXISTS increment_ad_impressions_batch(jsonb);
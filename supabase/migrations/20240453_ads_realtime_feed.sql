@@ -0,0 +1,112 @@
+-- Realtime clients only need to hear about content and status changes, but every
+-- click and impression bumps an ads row, and publishing ads fanned each bump out
+-- to every subscriber. A publication cannot drop those updates: a column list
+-- still sends the row, and an UPDATE row filter cannot compare old and new. So
+-- subscribers follow a mirror of ads that a trigger refreshes only when something
+-- other than the counters changes. Its rows carry the counters as of that change,
+-- just as the ads row did.
+CREATE TABLE IF NOT EXISTS public.ads_realtime (
+    id uuid PRIMARY KEY REFERENCES public.ads (id) ON DELETE CASCADE,
+    type text NOT NULL,
+    title text,
+    description text,
+    image_url text,
+    redirect_url text,
+    status text NOT NULL,
+    clicks integer,
+    max_clicks integer,
+    frequency_cap integer,
+    target_audience text,
+    budget numeric,
+    impressions integer,
+    max_impressions integer,
+    start_date timestamptz,
+    updated_at timestamptz NOT NULL
+);
+
+-- Readable by everyone, like ads; only the trigger writes to it
+ALTER TABLE public.ads_realtime ENABLE ROW LEVEL SECURITY;
+
+DROP POLICY IF EXISTS "Enable read access for all users" ON public.ads_realtime;
+CREATE POLICY "Enable read access for all users"
+ON public.ads_realtime FOR SELECT
+USING (true);
+
+CREATE OR REPLACE FUNCTION sync_ads_realtime()
+RETURNS TRIGGER
+LANGUAGE plpgsql
+SECURITY DEFINER
+AS $$
+BEGIN
+    INSERT INTO ads_realtime (id, type, title, description, image_url, redirect_url,
+                              status, clicks, max_clicks, frequency_cap, target_audience,
+                              budget, impressions, max_impressions, start_date, updated_at)
+    VALUES (NEW.id, NEW.type, NEW.title, NEW.description, NEW.image_url, NEW.redirect_url,
+            NEW.status, NEW.clicks, NEW.max_clicks, NEW.frequency_cap, NEW.target_audience,
+            NEW.budget, NEW.impressions, NEW.max_impressions, NEW.start_date, NEW.updated_at)
+    ON CONFLICT (id) DO UPDATE
+    SET type = EXCLUDED.type,
+        title = EXCLUDED.title,
+        description = EXCLUDED.description,
+        image_url = EXCLUDED.image_url,
+        redirect_url = EXCLUDED.redirect_url,
+        status = EXCLUDED.status,
+        clicks = EXCLUDED.clicks,
+        max_clicks = EXCLUDED.max_clicks,
+        frequency_cap = EXCLUDED.frequency_cap,
+        target_audience = EXCLUDED.target_audience,
+        budget = EXCLUDED.budget,
+        impressions = EXCLUDED.impressions,
+        max_impressions = EXCLUDED.max_impressions,
+        start_date = EXCLUDED.start_date,
+        updated_at = EXCLUDED.updated_at;
+    RETURN NULL;
+END;
+$$;
+
+DROP TRIGGER IF EXISTS ads_realtime_insert_trigger ON ads;
+CREATE TRIGGER ads_realtime_insert_trigger
+AFTER INSERT ON ads
+FOR EACH ROW
+EXECUTE FUNCTION sync_ads_realtime();
+
+-- Counter bumps (and the updated_at they touch) leave the mirror alone
+DROP TRIGGER IF EXISTS ads_realtime_update_trigger ON ads;
+CREATE TRIGGER ads_realtime_update_trigger
+AFTER UPDATE ON ads
+FOR EACH ROW
+WHEN ((OLD.type, OLD.title, OLD.description, OLD.image_url, OLD.redirect_url,
+       OLD.status, OLD.max_clicks, OLD.frequency_cap, OLD.target_audience,
+       OLD.budget, OLD.max_impressions, OLD.start_date)
+      IS DISTINCT FROM
+      (NEW.type, NEW.title, NEW.description, NEW.image_url, NEW.redirect_url,
+       NEW.status, NEW.max_clicks, NEW.frequency_cap, NEW.target_audience,
+       NEW.budget, NEW.max_impressions, NEW.start_date))
+EXECUTE FUNCTION sync_ads_realtime();
+
+INSERT INTO ads_realtime (id, type, title, description, image_url, redirect_url,
+                          status, clicks, max_clicks, frequency_cap, target_audience,
+                          budget, impressions, max_impressions, start_date, updated_at)
+SELECT id, type, title, description, image_url, redirect_url,
+       status, clicks, max_clicks, frequency_cap, target_audience,
+       budget, impressions, max_impressions, start_date, updated_at
+FROM ads
+ON CONFLICT (id) DO NOTHING;
+
+-- Deletes reach subscribers through the cascade
+DO $$
+BEGIN
+  IF EXISTS (
+    SELECT 1 FROM pg_publication_tables
+    WHERE pubname = 'supabase_realtime' AND schemaname = 'public' AND tablename = 'ads'
+  ) THEN
+    ALTER PUBLICATION supabase_realtime DROP TABLE public.ads;
+  END IF;
+  IF NOT EXISTS (
+    SELECT 1 FROM pg_publication_tables
+    WHERE pubname = 'supabase_realtime' AND schemaname = 'public' AND tablename = 'ads_realtime'
+  ) THEN
+    ALTER PUBLICATION supabase_realtime ADD TABLE public.ads_realtime;
+  END IF;
+END;
+$$;